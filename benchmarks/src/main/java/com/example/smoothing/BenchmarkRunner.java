@@ -0,0 +1,31 @@
+package com.example.smoothing;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark (or those matching args[0]) with 1, 2, 4 .. N producer threads
+ * and the GC profiler, so each result has both ops/s and gc.alloc.rate.norm (B/op).
+ */
+public final class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "com.example.smoothing.*";
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads = nextThreads(threads, maxThreads)) {
+            ChainedOptionsBuilder opts = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .result("jmh-result-t" + threads + ".json");
+            new Runner(opts.build()).run();
+        }
+    }
+
+    private static int nextThreads(int threads, int max) {
+        if (threads == max) return max + 1;
+        return Math.min(threads * 2, max);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.smoothing.generator;
+
+import com.example.smoothing.generator.batchsize.GeometricBatchSize;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Thinning step, Exp sampling, batch-size sampling and the square-wave rate lookup. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+    private SquareWaveRate rate;
+    private GeometricBatchSize batchSize;
+    private StochasticLoadGenerator generator;
+    private Instant t;
+
+    @Setup
+    public void setUp() {
+        rate = SquareWaveRate.of(2.0, 50, Duration.ofMinutes(1), 0.25).withJitter(0.1);
+        batchSize = GeometricBatchSize.ofMean(5);
+        generator = StochasticLoadGenerator.builder()
+                .scheduler(new NoopTaskScheduler())
+                .task((createdTime, priority) -> { })
+                .rate(rate)
+                .batchSampler(batchSize)
+                .intraBatchSpread(Duration.ZERO)
+                .ctx(new GenericApplicationContext())
+                .build();
+        generator.start(null);
+        t = Instant.now();
+    }
+
+    @Benchmark
+    public void tryAcceptAt() {
+        generator.tryAcceptAt(t);
+    }
+
+    @Benchmark
+    public long sampleExpNanos() {
+        return generator.sampleExpNanos(50.0);
+    }
+
+    @Benchmark
+    public int geometricBatchSize() {
+        return batchSize.sample();
+    }
+
+    @Benchmark
+    public double squareWaveRate() {
+        return rate.ratePerSecond(t);
+    }
+
+    /** Swallows scheduling so the benchmark measures the generator itself, not a timer. */
+    static final class NoopTaskScheduler implements TaskScheduler {
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+            return null;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, Instant startTime) {
+            return null;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period) {
+            return null;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Duration period) {
+            return null;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Instant startTime, Duration delay) {
+            return null;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Duration delay) {
+            return null;
+        }
+    }
+}
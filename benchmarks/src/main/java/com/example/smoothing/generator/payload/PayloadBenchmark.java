@@ -0,0 +1,29 @@
+package com.example.smoothing.generator.payload;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Per-send payload cost: old string concat vs pooled payloads (run with -prof gc for allocation rate). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadBenchmark {
+    @Param({"legacy", "fixed", "lognormal"})
+    private String distribution;
+    private PayloadFactory payloads;
+
+    @Setup
+    public void setUp() {
+        payloads = PayloadFactory.of(distribution, 100, 16, 10_240, 1.0, 4096);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String next() {
+        return payloads.next();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.smoothing.metrics;
+
+import org.HdrHistogram.Recorder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording one e2e latency, as every consumer thread does per message, from 4 threads at once:
+ * LatencyMetrics (per-thread single-writer histograms, overall + class) vs one shared concurrent Recorder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LatencyMetricsBenchmark {
+    private LatencyMetrics metrics;
+    private Recorder shared;
+
+    @Setup
+    public void setUp() {
+        metrics = new LatencyMetrics(1_000, 30, new int[]{4, 1});
+        shared = new Recorder(5_000_000L, 3);
+    }
+
+    @Benchmark
+    public void perThread() {
+        metrics.record(ThreadLocalRandom.current().nextLong(1, 5_000), 1);
+    }
+
+    @Benchmark
+    public void sharedRecorder() {
+        long v = ThreadLocalRandom.current().nextLong(1, 5_000);
+        shared.recordValue(v); // overall + class, like record(latencyMs, priority)
+        shared.recordValue(v);
+    }
+}
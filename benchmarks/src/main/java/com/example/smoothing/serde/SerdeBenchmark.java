@@ -0,0 +1,67 @@
+package com.example.smoothing.serde;
+
+import com.example.smoothing.model.Message;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (current KafkaConfig path) vs binary serde, ns/op.
+ * Bytes per message for both formats is printed once per fork in setUp.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerdeBenchmark {
+    private static final String TOPIC = "topic";
+
+    private JsonSerializer<Message> jsonSerializer;
+    private JsonDeserializer<Message> jsonDeserializer;
+    private BinaryMessageSerializer binarySerializer;
+    private BinaryMessageDeserializer binaryDeserializer;
+    private Message message;
+    private byte[] jsonBytes;
+    private byte[] binaryBytes;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.USE_LONG_FOR_INTS, true);
+        jsonSerializer = new JsonSerializer<>();
+        jsonDeserializer = new JsonDeserializer<>(Message.class, mapper);
+        binarySerializer = new BinaryMessageSerializer();
+        binaryDeserializer = new BinaryMessageDeserializer(jsonDeserializer);
+        message = new Message(System.currentTimeMillis(),
+                "payload-0.123456789012345670.98765432109876540.5555555555555555");
+        jsonBytes = jsonSerializer.serialize(TOPIC, message);
+        binaryBytes = binarySerializer.serialize(TOPIC, message);
+        System.out.printf("%nbytes/message: json=%d binary=%d%n", jsonBytes.length, binaryBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return jsonSerializer.serialize(TOPIC, message);
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return binarySerializer.serialize(TOPIC, message);
+    }
+
+    @Benchmark
+    public Message jsonDeserialize() {
+        return jsonDeserializer.deserialize(TOPIC, jsonBytes);
+    }
+
+    @Benchmark
+    public Message binaryDeserialize() {
+        return binaryDeserializer.deserialize(TOPIC, binaryBytes);
+    }
+}
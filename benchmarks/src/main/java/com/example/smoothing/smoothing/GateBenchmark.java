@@ -0,0 +1,47 @@
+package com.example.smoothing.smoothing;
+
+import com.example.smoothing.generator.TimedTask;
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * enqueue() from producer threads, grant() from a consumer thread; drain() runs inside both.
+ * drop_oldest keeps producers from parking when the ring is full.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GateBenchmark {
+    private static final TimedTask NOOP = (createdTime, priority) -> { };
+    private BackpressureGate gate;
+
+    @Setup
+    public void setUp() {
+        gate = new BackpressureGate(new StageLatencyMetrics(), 1_000, "platform", 32_768, "drop_oldest", "strict", new int[]{1}, false, 0,
+                "", 0, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        gate.shutdown();
+    }
+
+    @Benchmark
+    @Group("gate")
+    @GroupThreads(3)
+    public void enqueue() {
+        gate.enqueue(System.currentTimeMillis(), NOOP);
+    }
+
+    @Benchmark
+    @Group("gate")
+    @GroupThreads(1)
+    public void grant() {
+        gate.grant(1);
+    }
+}
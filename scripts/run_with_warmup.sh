@@ -1,13 +1,15 @@
 #!/usr/bin/env bash
 set -euo pipefail
+# Container-per-phase sweep. The same matrix runs in one JVM with EXPERIMENT_ENABLED=true and
+# EXPERIMENT_MATRIX="pg_bp_1000:1000:true:true:50:5,pg_bp_no:0:false:true:50:5" (see ExperimentRunner).
 
 
 kafka_recreate_topic(){
   docker compose exec -it kafka kafka-topics.sh --bootstrap-server localhost:9092 --create --if-not-exists --topic topic \
-    --partitions 1 --replication-factor 1
+    --partitions "${KAFKA_PARTITIONS:-1}" --replication-factor 1
   docker compose exec -it kafka kafka-topics.sh --bootstrap-server localhost:9092 --delete --topic topic
   docker compose exec -it kafka kafka-topics.sh --bootstrap-server localhost:9092 --create --if-not-exists --topic topic \
-    --partitions 1 --replication-factor 1
+    --partitions "${KAFKA_PARTITIONS:-1}" --replication-factor 1
 }
 
 pg_truncate_vacuum(){
@@ -1,74 +1,204 @@
 package com.example.smoothing.config;
 
 import com.example.smoothing.model.Message;
+import com.example.smoothing.serde.BinaryMessageDeserializer;
+import com.example.smoothing.serde.BinaryMessageSerializer;
+import com.example.smoothing.service.ConsumerService;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import reactor.kafka.receiver.ReceiverOptions;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+@Slf4j
 @Configuration
 public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
     @Value(value = "${spring.kafka.topic}")
     private String topic;
+    @Value(value = "${spring.kafka.partitions}")
+    private int partitions;
+    @Value(value = "${consumer.group-id}")
+    private String groupId;
+    @Value(value = "${consumer.max-poll-records}")
+    private int maxPollRecords;
+    @Value(value = "${spring.kafka.serde}")
+    private String serde; // json | binary
+    @Value(value = "${spring.kafka.producer.properties.linger.ms}")
+    private int lingerMs;
+    @Value(value = "${spring.kafka.producer.properties.batch.size}")
+    private int batchSize;
+    @Value(value = "${producer.tuning.burst.linger-ms}")
+    private int burstLingerMs;
+    @Value(value = "${producer.tuning.burst.batch-size}")
+    private int burstBatchSize;
+    @Value(value = "${producer.tuning.burst.compression}")
+    private String burstCompression;
+
+    @Value(value = "${deadline.dead-letter-topic}")
+    private String deadLetterTopic;
+    @Value(value = "${pipeline.reactive.concurrency}")
+    private int reactiveConcurrency;
 
     //Topic
     @Bean
     public NewTopic kafkaTopic() {
-        return new NewTopic(topic, 1, (short) 1);
+        return new NewTopic(topic, partitions, (short) 1);
+    }
+
+    /** Messages that missed their deadline (deadline.action=dead-letter). */
+    @Bean
+    public NewTopic deadLetterTopic() {
+        return new NewTopic(deadLetterTopic, 1, (short) 1);
     }
 
     //Producer
+    /** STEADY profile: spring.kafka.producer.properties (no linger, minimal batches). */
     @Bean
+    @Primary
     public ProducerFactory<String, Message> producerFactory() {
+        return producerFactory(lingerMs, batchSize, "none");
+    }
+
+    /** BURST profile for HIGH phases, see ProducerTuning. */
+    @Bean
+    public ProducerFactory<String, Message> burstProducerFactory() {
+        return producerFactory(burstLingerMs, burstBatchSize, burstCompression);
+    }
+
+    private ProducerFactory<String, Message> producerFactory(int linger, int batch, String compression) {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, linger);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batch);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        if (isBinarySerde()) {
+            return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), new BinaryMessageSerializer());
+        }
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         return new DefaultKafkaProducerFactory<>(props);
     }
 
     @Bean
+    @Primary
     public KafkaTemplate<String, Message> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    @Bean
+    public KafkaTemplate<String, Message> burstKafkaTemplate() {
+        return new KafkaTemplate<>(burstProducerFactory());
+    }
+
     //Listeners
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, Message> kafkaListenerContainerFactory() {
+    public ConsumerFactory<String, Message> consumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProps(), new StringDeserializer(), messageDeserializer());
+    }
+
+    /**
+     * Same consumer group and deserializers as the listeners, for pipeline.mode=reactive.
+     * flatMap acknowledges records out of order: with deferred commits the receiver only commits an offset
+     * once every lower offset of the partition is acknowledged, and pauses the partition while more than
+     * pipeline.reactive.concurrency records wait behind a gap.
+     */
+    @Bean
+    public ReceiverOptions<String, Message> reactiveReceiverOptions() {
+        return ReceiverOptions.<String, Message>create(consumerProps())
+                .withKeyDeserializer(new StringDeserializer())
+                .withValueDeserializer(messageDeserializer())
+                .maxDeferredCommits(reactiveConcurrency)
+                .subscription(List.of(topic));
+    }
+
+    private Map<String, Object> consumerProps() {
         Map<String, Object> props = new HashMap<>();
-        props.put(org.apache.kafka.clients.consumer.ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(org.apache.kafka.clients.consumer.ConsumerConfig.GROUP_ID_CONFIG, "my-group");
-        props.put(org.apache.kafka.clients.consumer.ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        props.put(org.apache.kafka.clients.consumer.ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(org.apache.kafka.clients.consumer.ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        return props;
+    }
 
+    private Deserializer<Message> messageDeserializer() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.configure(DeserializationFeature.USE_LONG_FOR_INTS, true);
 
-        var consumerFactory = new DefaultKafkaConsumerFactory<>(
-                props,
-                new StringDeserializer(),
-                new JsonDeserializer<>(Message.class, mapper)
-        );
+        var jsonDeserializer = new JsonDeserializer<>(Message.class, mapper);
+        // an undecodable record becomes a null value instead of failing every poll of its partition
+        // (record listener: skipped by the container's error handler; batch / reactive: skipped in the service);
+        // either way its credit is returned
+        Deserializer<Message> value = isBinarySerde() ? new BinaryMessageDeserializer(jsonDeserializer) : jsonDeserializer;
+        return new ErrorHandlingDeserializer<>(value);
+    }
+
+    private boolean isBinarySerde() {
+        return "binary".equalsIgnoreCase(serde);
+    }
+
+    /**
+     * Record listener. An undecodable record never reaches it: DeserializationException is not retried and goes
+     * straight to the recoverer, which returns the record's credit. Other failures keep the default retries.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Message> kafkaListenerContainerFactory(
+            ObjectProvider<ConsumerService> consumerService) {
+        var factory = new ConcurrentKafkaListenerContainerFactory<String, Message>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setCommonErrorHandler(new DefaultErrorHandler((rec, e) -> {
+            if (isUndecodable(e)) {
+                consumerService.getObject().onUndecodable();
+            } else {
+                log.error("Record {}-{}@{} failed after retries, skipped", rec.topic(), rec.partition(), rec.offset(), e);
+            }
+        }));
+        return factory;
+    }
+
+    private static boolean isUndecodable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DeserializationException) return true;
+        }
+        return false;
+    }
+
+    /** Whole poll is delivered as List<Message>; offsets are committed after the listener returns. */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Message> batchKafkaListenerContainerFactory() {
         var factory = new ConcurrentKafkaListenerContainerFactory<String, Message>();
-        factory.setConsumerFactory(consumerFactory);
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
         return factory;
     }
 
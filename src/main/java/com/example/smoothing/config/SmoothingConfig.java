@@ -0,0 +1,41 @@
+package com.example.smoothing.config;
+
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import com.example.smoothing.smoothing.BackpressureGate;
+import com.example.smoothing.smoothing.LeakyBucketSmoother;
+import com.example.smoothing.smoothing.Smoother;
+import com.example.smoothing.smoothing.TokenBucketSmoother;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class SmoothingConfig {
+    @Value("${smoothing.strategy}")
+    private String strategy; // credit | token-bucket | leaky-bucket
+    @Value("${smoothing.rate}")
+    private double rate;
+    @Value("${smoothing.burst}")
+    private double burst;
+    @Value("${smoothing.adaptive}")
+    private boolean adaptive;
+    @Value("${backpressure.class-weights}")
+    private int[] classWeights;
+    @Value("${backpressure.queue-capacity}")
+    private int queueCapacity;
+
+    /** The smoother the generator feeds when backpressure.enabled. Primary: with credit it is the gate itself. */
+    @Bean
+    @Primary
+    public Smoother smoother(BackpressureGate backpressureGate, StageLatencyMetrics stageLatencyMetrics) {
+        return switch (strategy.toLowerCase()) {
+            case "credit" -> backpressureGate;
+            case "token-bucket" -> new TokenBucketSmoother(rate, burst, classWeights.length, queueCapacity,
+                    stageLatencyMetrics);
+            case "leaky-bucket" -> new LeakyBucketSmoother(rate, adaptive, 0.2, 10.0, classWeights.length, queueCapacity,
+                    stageLatencyMetrics);
+            default -> throw new IllegalArgumentException("Unknown smoothing.strategy: " + strategy);
+        };
+    }
+}
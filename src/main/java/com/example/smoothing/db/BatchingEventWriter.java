@@ -0,0 +1,222 @@
+package com.example.smoothing.db;
+
+import com.example.smoothing.metrics.LatencyMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group commit for {@link EventDao}: inserts are collected up to the target size or max-delay-ms
+ * and written by a single flusher thread in one transaction.
+ * Each insert gets a future completed with the DB time (ms) of the batch it went into.
+ * A batch is also flushed as soon as the inbox stays empty for idle-flush-ms, so a trickle of
+ * LOW-phase messages does not wait out max-delay-ms.
+ * Adaptive mode sizes batches against a DB-time budget: a full batch that took under 80% of the budget
+ * grows the target by 25%, a batch over the budget halves it (bounded by min-rows..max-rows).
+ * Batch size and DB time are interval histograms swapped every metrics.latency.interval-ms, like the latency metrics.
+ */
+@Slf4j
+@Component
+public class BatchingEventWriter {
+    private static final long HIGHEST_TRACKABLE_ROWS = 1_000_000L;
+    private static final long HIGHEST_TRACKABLE_MICROS = 60_000_000L;
+
+    public enum Mode { BATCH, MULTIROW, COPY }
+
+    public enum FlushReason { SIZE, DEADLINE, IDLE }
+
+    private record PendingInsert(EventRow row, CompletableFuture<Double> done) {
+    }
+
+    private final EventDao eventDao;
+    private final TransactionTemplate tx;
+    @Getter
+    private final boolean enabled;
+    private final Mode mode;
+    private final int maxRows;
+    private final int minRows;
+    private final boolean adaptive;
+    private final double latencyBudgetMs;
+    private final long maxDelayNanos;
+    private final long idleNanos;
+    private final BlockingQueue<PendingInsert> inbox;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    @Getter
+    private volatile int lastBatchSize;
+    @Getter
+    private volatile int targetBatchSize;
+    // written by the flusher thread only
+    private final SingleWriterRecorder batchSizes = new SingleWriterRecorder(HIGHEST_TRACKABLE_ROWS, 2);
+    private final SingleWriterRecorder batchDbMicros = new SingleWriterRecorder(HIGHEST_TRACKABLE_MICROS, 3);
+    // rotate() only
+    private Histogram sizesInterval;
+    private Histogram dbMicrosInterval;
+    /** Rows per flushed batch, last completed interval. */
+    @Getter
+    private volatile LatencyMetrics.Snapshot lastIntervalBatchSizes = LatencyMetrics.Snapshot.EMPTY;
+    /** DB time per flushed batch (µs), last completed interval. */
+    @Getter
+    private volatile LatencyMetrics.Snapshot lastIntervalBatchDbMicros = LatencyMetrics.Snapshot.EMPTY;
+    private final LongAdder[] flushes = new LongAdder[FlushReason.values().length];
+
+    public BatchingEventWriter(
+            EventDao eventDao,
+            TransactionTemplate tx,
+            @Value("${db.batch.enabled}") boolean enabled,
+            @Value("${db.batch.mode}") String mode,
+            @Value("${db.batch.max-rows}") int maxRows,
+            @Value("${db.batch.max-delay-ms}") long maxDelayMs,
+            @Value("${db.batch.idle-flush-ms}") long idleFlushMs,
+            @Value("${db.batch.queue-capacity}") int queueCapacity,
+            @Value("${db.batch.adaptive.enabled}") boolean adaptive,
+            @Value("${db.batch.adaptive.latency-budget-ms}") double latencyBudgetMs,
+            @Value("${db.batch.adaptive.min-rows}") int minRows
+    ) {
+        if (maxRows <= 0) throw new IllegalArgumentException("max-rows must be > 0");
+        if (minRows <= 0 || minRows > maxRows) throw new IllegalArgumentException("min-rows must be in 1..max-rows");
+        if (maxDelayMs < 0) throw new IllegalArgumentException("max-delay-ms must be >= 0");
+        if (idleFlushMs < 0) throw new IllegalArgumentException("idle-flush-ms must be >= 0");
+        if (adaptive && !(latencyBudgetMs > 0)) throw new IllegalArgumentException("latency-budget-ms must be > 0");
+        this.eventDao = eventDao;
+        this.tx = tx;
+        this.enabled = enabled;
+        this.mode = Mode.valueOf(mode.toUpperCase());
+        this.maxRows = maxRows;
+        this.minRows = minRows;
+        this.adaptive = adaptive;
+        this.latencyBudgetMs = latencyBudgetMs;
+        this.targetBatchSize = adaptive ? minRows : maxRows;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleFlushMs);
+        for (int i = 0; i < flushes.length; i++) flushes[i] = new LongAdder();
+        this.inbox = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::flushLoop, "db-batch-writer");
+        this.flusher.setDaemon(true);
+        if (enabled) {
+            flusher.start();
+            log.info("BatchingEventWriter started: mode={}, maxRows={}, maxDelay={}ms, idleFlush={}ms, adaptive={} (budget {}ms, minRows={})",
+                    this.mode, maxRows, maxDelayMs, idleFlushMs, adaptive, latencyBudgetMs, minRows);
+        }
+    }
+
+    /** Blocks only when the inbox is full. */
+    public CompletableFuture<Double> insert(long generatedAtMs, String payloadText) {
+        var pending = new PendingInsert(new EventRow(generatedAtMs, payloadText), new CompletableFuture<>());
+        try {
+            inbox.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.done().completeExceptionally(e);
+        }
+        return pending.done();
+    }
+
+    public int getPendingCount() {
+        return inbox.size();
+    }
+
+    public long getFlushCount(FlushReason reason) {
+        return flushes[reason.ordinal()].sum();
+    }
+
+    private void flushLoop() {
+        List<PendingInsert> batch = new ArrayList<>(maxRows);
+        while (running) {
+            try {
+                PendingInsert first = inbox.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                int limit = targetBatchSize;
+                long deadline = System.nanoTime() + maxDelayNanos;
+                FlushReason reason;
+                while (true) {
+                    inbox.drainTo(batch, limit - batch.size());
+                    if (batch.size() >= limit) {
+                        reason = FlushReason.SIZE;
+                        break;
+                    }
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        reason = FlushReason.DEADLINE;
+                        break;
+                    }
+                    boolean idleWait = idleNanos > 0 && idleNanos < left;
+                    PendingInsert next = inbox.poll(idleWait ? idleNanos : left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        reason = idleWait ? FlushReason.IDLE : FlushReason.DEADLINE;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch, reason);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingInsert> batch, FlushReason reason) {
+        List<EventRow> rows = new ArrayList<>(batch.size());
+        for (PendingInsert p : batch) rows.add(p.row());
+        try {
+            Double dbMs = tx.execute(status -> switch (mode) {
+                case BATCH -> eventDao.insertBatch(rows);
+                case MULTIROW -> eventDao.insertMultiRow(rows);
+                case COPY -> eventDao.copyIn(rows);
+            });
+            lastBatchSize = rows.size();
+            flushes[reason.ordinal()].increment();
+            batchSizes.recordValue(Math.min(rows.size(), HIGHEST_TRACKABLE_ROWS));
+            batchDbMicros.recordValue(Math.min((long) (dbMs * 1_000), HIGHEST_TRACKABLE_MICROS));
+            if (adaptive) adapt(rows.size(), reason, dbMs);
+            for (PendingInsert p : batch) p.done().complete(dbMs);
+        } catch (Exception e) {
+            log.error("Batch flush of {} rows failed", rows.size(), e);
+            if (adaptive) targetBatchSize = Math.max(minRows, targetBatchSize / 2);
+            for (PendingInsert p : batch) p.done().completeExceptionally(e);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${metrics.latency.interval-ms}")
+    public void rotate() {
+        sizesInterval = batchSizes.getIntervalHistogram(sizesInterval);
+        dbMicrosInterval = batchDbMicros.getIntervalHistogram(dbMicrosInterval);
+        lastIntervalBatchSizes = LatencyMetrics.Snapshot.of(sizesInterval);
+        lastIntervalBatchDbMicros = LatencyMetrics.Snapshot.of(dbMicrosInterval);
+    }
+
+    /** Grow only on full batches (the load asks for more), shrink whenever the budget is exceeded. */
+    private void adapt(int size, FlushReason reason, double dbMs) {
+        int target = targetBatchSize;
+        if (dbMs > latencyBudgetMs) {
+            target = Math.max(minRows, Math.min(target, size) / 2);
+        } else if (reason == FlushReason.SIZE && dbMs < latencyBudgetMs * 0.8) {
+            target = Math.min(maxRows, target + Math.max(1, target / 4));
+        }
+        targetBatchSize = target;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        flusher.interrupt();
+    }
+}
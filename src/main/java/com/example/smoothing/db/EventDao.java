@@ -1,14 +1,25 @@
 package com.example.smoothing.db;
 
+import com.example.smoothing.metrics.InsertCostMetrics;
 import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.List;
+
 @Component
 @RequiredArgsConstructor
 public class EventDao {
     private final JdbcTemplate jdbc;
-    private static final String SQL = "INSERT INTO events(generated_at_ms, payload_text) VALUES (?, ?)";
+    private final InsertCostMetrics insertCostMetrics;
+    static final String SQL = "INSERT INTO events(generated_at_ms, payload_text) VALUES (?, ?)";
+    private static final String MULTI_ROW_SQL_PREFIX = "INSERT INTO events(generated_at_ms, payload_text) VALUES ";
+    private static final String COPY_SQL = "COPY events(generated_at_ms, payload_text) FROM STDIN WITH (FORMAT csv)";
 
     /** Returns length of DB operation in ms. */
     public double insert(long generatedAtMs, String payloadText) {
@@ -17,6 +28,59 @@ public class EventDao {
             ps.setLong(1, generatedAtMs);
             ps.setString(2, payloadText);
         });
+        insertCostMetrics.record(t1, 1);
+        return (System.nanoTime() - t1) / 1_000_000.0;
+    }
+
+    /** JDBC batch of single-row inserts. Returns length of DB operation in ms. */
+    public double insertBatch(List<EventRow> rows) {
+        long t1 = System.nanoTime();
+        jdbc.batchUpdate(SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.generatedAtMs());
+            ps.setString(2, row.payloadText());
+        });
+        insertCostMetrics.record(t1, rows.size());
+        return (System.nanoTime() - t1) / 1_000_000.0;
+    }
+
+    /** One INSERT ... VALUES (?, ?), (?, ?), ... statement. Returns length of DB operation in ms. */
+    public double insertMultiRow(List<EventRow> rows) {
+        long t1 = System.nanoTime();
+        StringBuilder sql = new StringBuilder(MULTI_ROW_SQL_PREFIX.length() + rows.size() * 8)
+                .append(MULTI_ROW_SQL_PREFIX);
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        jdbc.update(sql.toString(), ps -> {
+            int idx = 1;
+            for (EventRow row : rows) {
+                ps.setLong(idx++, row.generatedAtMs());
+                ps.setString(idx++, row.payloadText());
+            }
+        });
+        insertCostMetrics.record(t1, rows.size());
+        return (System.nanoTime() - t1) / 1_000_000.0;
+    }
+
+    /** PostgreSQL COPY FROM STDIN (csv). Returns length of DB operation in ms. */
+    public double copyIn(List<EventRow> rows) {
+        long t1 = System.nanoTime();
+        StringBuilder csv = new StringBuilder(rows.size() * 64);
+        for (EventRow row : rows) {
+            csv.append(row.generatedAtMs()).append(',');
+            if (row.payloadText() != null) {
+                csv.append('"').append(row.payloadText().replace("\"", "\"\"")).append('"');
+            }
+            csv.append('\n');
+        }
+        jdbc.execute((ConnectionCallback<Long>) con -> {
+            try {
+                return con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        insertCostMetrics.record(t1, rows.size());
         return (System.nanoTime() - t1) / 1_000_000.0;
     }
-}
\ No newline at end of file
+}
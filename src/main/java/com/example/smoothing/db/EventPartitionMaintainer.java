@@ -0,0 +1,36 @@
+package com.example.smoothing.db;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps time-range partitions ahead of the clock for the partitioned schema profile (see schema-partitioned.sql).
+ * The schema script creates none: the first run, right at startup, creates them with the configured width.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "db.schema-profile", havingValue = "partitioned")
+public class EventPartitionMaintainer {
+    private final JdbcTemplate jdbc;
+    @Value("${db.partition.width-minutes}")
+    private long widthMinutes;
+    @Value("${db.partition.ahead}")
+    private int ahead;
+
+    @Scheduled(initialDelay = 0, fixedRateString = "${db.partition.width-minutes}", timeUnit = TimeUnit.MINUTES)
+    public void ensurePartitions() {
+        try {
+            jdbc.queryForList("SELECT ensure_events_partitions(?, ?)", TimeUnit.MINUTES.toMillis(widthMinutes), ahead);
+        } catch (Exception e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+}
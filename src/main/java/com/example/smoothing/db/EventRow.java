@@ -0,0 +1,4 @@
+package com.example.smoothing.db;
+
+public record EventRow(long generatedAtMs, String payloadText) {
+}
@@ -0,0 +1,346 @@
+package com.example.smoothing.db;
+
+import com.example.smoothing.metrics.InsertCostMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DB sink on N pinned connections, bypassing the Hikari pool: every lane owns one JDBC connection,
+ * one writer thread and a bounded inbox. Rows are routed by a hash of the caller's key, so rows with
+ * the same key are written in order (except across a resize); rows without a key go round-robin.
+ * A lane writes whatever its inbox holds, up to max-rows, as one JDBC batch in one transaction —
+ * single-row transactions at low load, group commit under load, no waiting for a batch to fill.
+ * Auto-size: every interval the busy time of all lanes (connections' worth of Postgres work) is divided
+ * by target-utilization to get the lane count; grows at once, shrinks by one lane per interval.
+ * Saturation: transaction time is compared only between transactions of similar size (buckets of
+ * sqrt(2) x rows), each against the best interval mean of its bucket over the last baseline-intervals.
+ * If the transactions of this interval take on average more than saturation-factor x their baseline,
+ * Postgres itself is the bottleneck and more connections would only queue inside it, so the count is
+ * reduced instead. A LOW→HIGH ramp only moves transactions into bigger buckets and does not count.
+ * Deactivated lanes finish their inbox and close their connection.
+ */
+@Slf4j
+@Component
+public class LaneEventWriter {
+    // fewer transactions of a size bucket in one interval are too noisy to compare
+    private static final int MIN_BUCKET_TX = 3;
+
+    private record PendingInsert(EventRow row, CompletableFuture<Double> done) {
+    }
+
+    private final InsertCostMetrics insertCostMetrics;
+    private final String url;
+    private final String username;
+    private final String password;
+    @Getter
+    private final boolean enabled;
+    private final int minLanes;
+    private final boolean autoSize;
+    private final double targetUtilization;
+    private final double saturationFactor;
+    private final int maxRows;
+    private final Lane[] lanes;
+    private final AtomicInteger nextLane = new AtomicInteger();
+    private volatile boolean running = true;
+    @Getter
+    private volatile int activeLanes;
+    // per transaction-size bucket, all lanes
+    private final LongAdder[] bucketTx;
+    private final LongAdder[] bucketTxNanos;
+
+    // resize() only
+    private final long[] lastBusyNanos;
+    private final long[] lastRows;
+    private final long[] lastBucketTx;
+    private final long[] lastBucketTxNanos;
+    private final double[][] bucketHistory; // interval mean tx µs per bucket, NaN = too few transactions
+    private int historySlot;
+    private long lastResizeNanos = System.nanoTime();
+    @Getter
+    private volatile double lastRowMicros;
+    /** Transaction time of the last interval relative to the baseline of comparable sizes (1 = no slowdown). */
+    @Getter
+    private volatile double lastTxTimeRatio = 1.0;
+
+    public LaneEventWriter(
+            InsertCostMetrics insertCostMetrics,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${db.lanes.enabled}") boolean enabled,
+            @Value("${db.lanes.initial}") int initialLanes,
+            @Value("${db.lanes.min}") int minLanes,
+            @Value("${db.lanes.max}") int maxLanes,
+            @Value("${db.lanes.auto-size}") boolean autoSize,
+            @Value("${db.lanes.target-utilization}") double targetUtilization,
+            @Value("${db.lanes.saturation-factor}") double saturationFactor,
+            @Value("${db.lanes.baseline-intervals}") int baselineIntervals,
+            @Value("${db.lanes.max-rows}") int maxRows,
+            @Value("${db.lanes.inbox-capacity}") int inboxCapacity
+    ) {
+        if (minLanes <= 0 || maxLanes < minLanes) throw new IllegalArgumentException("require 0 < min <= max lanes");
+        if (initialLanes < minLanes || initialLanes > maxLanes) throw new IllegalArgumentException("initial lanes must be in min..max");
+        if (!(targetUtilization > 0 && targetUtilization <= 1)) throw new IllegalArgumentException("target-utilization must be in (0, 1]");
+        if (!(saturationFactor > 1)) throw new IllegalArgumentException("saturation-factor must be > 1");
+        if (baselineIntervals <= 0) throw new IllegalArgumentException("baseline-intervals must be > 0");
+        if (maxRows <= 0) throw new IllegalArgumentException("max-rows must be > 0");
+        this.insertCostMetrics = insertCostMetrics;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.enabled = enabled;
+        this.minLanes = minLanes;
+        this.autoSize = autoSize;
+        this.targetUtilization = targetUtilization;
+        this.saturationFactor = saturationFactor;
+        this.maxRows = maxRows;
+        this.activeLanes = initialLanes;
+        this.lanes = new Lane[maxLanes];
+        this.lastBusyNanos = new long[maxLanes];
+        this.lastRows = new long[maxLanes];
+        int buckets = sizeBucket(maxRows) + 1;
+        this.bucketTx = new LongAdder[buckets];
+        this.bucketTxNanos = new LongAdder[buckets];
+        for (int b = 0; b < buckets; b++) {
+            bucketTx[b] = new LongAdder();
+            bucketTxNanos[b] = new LongAdder();
+        }
+        this.lastBucketTx = new long[buckets];
+        this.lastBucketTxNanos = new long[buckets];
+        this.bucketHistory = new double[buckets][baselineIntervals];
+        for (double[] h : bucketHistory) Arrays.fill(h, Double.NaN);
+        for (int i = 0; i < maxLanes; i++) lanes[i] = new Lane(i, inboxCapacity);
+        if (enabled) {
+            for (Lane lane : lanes) lane.thread.start();
+            log.info("LaneEventWriter started: lanes={} (min={}, max={}, autoSize={}, utilization={}), maxRows={}, inbox={}",
+                    initialLanes, minLanes, maxLanes, autoSize, targetUtilization, maxRows, inboxCapacity);
+        }
+    }
+
+    /** Routes by key hash; blocks only when the lane inbox is full. The future gets the DB time (ms) of the transaction. */
+    public CompletableFuture<Double> insert(long key, long generatedAtMs, String payloadText) {
+        return enqueue(lanes[Math.floorMod((int) ((key * 0x9E3779B97F4A7C15L) >>> 32), activeLanes)], generatedAtMs, payloadText);
+    }
+
+    /** Rows without a key (no ordering needed): round-robin over the active lanes. */
+    public CompletableFuture<Double> insert(long generatedAtMs, String payloadText) {
+        return enqueue(lanes[Math.floorMod(nextLane.getAndIncrement(), activeLanes)], generatedAtMs, payloadText);
+    }
+
+    private CompletableFuture<Double> enqueue(Lane lane, long generatedAtMs, String payloadText) {
+        var pending = new PendingInsert(new EventRow(generatedAtMs, payloadText), new CompletableFuture<>());
+        try {
+            lane.inbox.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.done().completeExceptionally(e);
+        }
+        return pending.done();
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getPendingCount(int lane) {
+        return lanes[lane].inbox.size();
+    }
+
+    public long getRows(int lane) {
+        return lanes[lane].rows.sum();
+    }
+
+    public Histogram getTxMicros(int lane) {
+        return lanes[lane].txMicros;
+    }
+
+    public boolean isConnected(int lane) {
+        return lanes[lane].connection != null;
+    }
+
+    @Scheduled(fixedRateString = "${db.lanes.resize-interval-ms}")
+    public void resize() {
+        if (!enabled || !autoSize) return;
+        long now = System.nanoTime();
+        long busy = 0, rows = 0;
+        for (int i = 0; i < lanes.length; i++) {
+            long b = lanes[i].busyNanos.sum(), r = lanes[i].rows.sum();
+            busy += b - lastBusyNanos[i];
+            rows += r - lastRows[i];
+            lastBusyNanos[i] = b;
+            lastRows[i] = r;
+        }
+        long elapsed = now - lastResizeNanos;
+        lastResizeNanos = now;
+        if (elapsed <= 0) return;
+
+        if (rows > 0) lastRowMicros = busy / 1_000.0 / rows;
+        double ratio = txTimeRatio();
+        lastTxTimeRatio = ratio;
+        int current = activeLanes;
+        int next;
+        if (ratio > saturationFactor) {
+            next = current - 1;                                      // Postgres is the bottleneck
+        } else {
+            int needed = (int) Math.ceil((double) busy / elapsed / targetUtilization);
+            next = needed > current ? needed : Math.max(needed, current - 1);
+        }
+        next = Math.max(minLanes, Math.min(lanes.length, next));
+        if (next != current) {
+            activeLanes = next;
+            log.info("DB lanes {} -> {} (busy {} connections, {} us/row, tx time {} x baseline)",
+                    current, next, String.format("%.2f", (double) busy / elapsed),
+                    String.format("%.1f", lastRowMicros), String.format("%.2f", ratio));
+        }
+    }
+
+    /**
+     * Mean of (interval mean tx time / baseline) over the size buckets, weighted by their transactions;
+     * the baseline of a bucket is its best interval mean within the history window, this interval excluded.
+     * Records this interval into the history afterwards.
+     */
+    private double txTimeRatio() {
+        double weighted = 0;
+        long weight = 0;
+        for (int b = 0; b < bucketTx.length; b++) {
+            long tx = bucketTx[b].sum(), nanos = bucketTxNanos[b].sum();
+            long n = tx - lastBucketTx[b];
+            double mean = n >= MIN_BUCKET_TX ? (nanos - lastBucketTxNanos[b]) / 1_000.0 / n : Double.NaN;
+            lastBucketTx[b] = tx;
+            lastBucketTxNanos[b] = nanos;
+            double baseline = Double.POSITIVE_INFINITY;
+            for (double h : bucketHistory[b]) {
+                if (h < baseline) baseline = h; // NaN never compares less
+            }
+            if (!Double.isNaN(mean) && baseline < Double.POSITIVE_INFINITY && baseline > 0) {
+                weighted += mean / baseline * n;
+                weight += n;
+            }
+            bucketHistory[b][historySlot] = mean;
+        }
+        historySlot = (historySlot + 1) % bucketHistory[0].length;
+        return weight == 0 ? 1.0 : weighted / weight;
+    }
+
+    /** Two buckets per power of two: transactions within one bucket differ by less than sqrt(2) x rows. */
+    static int sizeBucket(int rows) {
+        int k = 31 - Integer.numberOfLeadingZeros(rows);
+        return 2 * k + ((long) rows * rows >= 2L << (2 * k) ? 1 : 0);
+    }
+
+    private final class Lane {
+        final int id;
+        final BlockingQueue<PendingInsert> inbox;
+        final Thread thread;
+        final LongAdder rows = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final Histogram txMicros = new ConcurrentHistogram(60_000_000L, 3);
+        // writer thread only (read for the connected gauge)
+        volatile Connection connection;
+        PreparedStatement insert;
+
+        Lane(int id, int inboxCapacity) {
+            this.id = id;
+            this.inbox = new ArrayBlockingQueue<>(inboxCapacity);
+            this.thread = new Thread(this::writeLoop, "db-lane-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        private void writeLoop() {
+            List<PendingInsert> batch = new ArrayList<>(maxRows);
+            while (running) {
+                try {
+                    PendingInsert first = inbox.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (id >= activeLanes) close(); // deactivated and drained
+                        continue;
+                    }
+                    batch.add(first);
+                    inbox.drainTo(batch, maxRows - 1);
+                    write(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } finally {
+                    batch.clear();
+                }
+            }
+            close();
+        }
+
+        private void write(List<PendingInsert> batch) {
+            long t1 = System.nanoTime();
+            try {
+                if (connection == null) open();
+                for (PendingInsert p : batch) {
+                    insert.setLong(1, p.row().generatedAtMs());
+                    insert.setString(2, p.row().payloadText());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+                long nanos = System.nanoTime() - t1;
+                insertCostMetrics.record(t1, batch.size());
+                busyNanos.add(nanos);
+                rows.add(batch.size());
+                int bucket = sizeBucket(batch.size());
+                bucketTx[bucket].increment();
+                bucketTxNanos[bucket].add(nanos);
+                txMicros.recordValue(Math.min(nanos / 1_000, txMicros.getHighestTrackableValue()));
+                double dbMs = nanos / 1_000_000.0;
+                for (PendingInsert p : batch) p.done().complete(dbMs);
+            } catch (SQLException e) {
+                busyNanos.add(System.nanoTime() - t1);
+                log.error("DB lane {}: write of {} rows failed", id, batch.size(), e);
+                close(); // reconnect on the next batch
+                for (PendingInsert p : batch) p.done().completeExceptionally(e);
+            }
+        }
+
+        private void open() throws SQLException {
+            Connection c = DriverManager.getConnection(url, username, password);
+            c.setAutoCommit(false);
+            insert = c.prepareStatement(EventDao.SQL);
+            connection = c;
+            log.info("DB lane {} connected", id);
+        }
+
+        private void close() {
+            Connection c = connection;
+            if (c == null) return;
+            connection = null;
+            insert = null;
+            try {
+                c.close();
+            } catch (SQLException e) {
+                log.warn("DB lane {}: close failed", id, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Lane lane : lanes) lane.thread.interrupt();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.smoothing.db;
+
+import com.example.smoothing.metrics.InsertCostMetrics;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link EventDao} over R2DBC (pipeline.mode=reactive).
+ * The pool is deliberately not a ConnectionFactory bean: Boot would then back off the JDBC DataSource
+ * that EventDao and BatchingEventWriter still need.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "pipeline.mode", havingValue = "reactive")
+public class ReactiveEventDao {
+    private static final String SQL = "INSERT INTO events(generated_at_ms, payload_text) VALUES ($1, $2)";
+    private final ConnectionPool pool;
+    private final InsertCostMetrics insertCostMetrics;
+
+    public ReactiveEventDao(
+            InsertCostMetrics insertCostMetrics,
+            @Value("${pipeline.reactive.r2dbc-url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${pipeline.reactive.pool-size}") int poolSize
+    ) {
+        var options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(1)
+                .maxSize(poolSize)
+                .build());
+        this.insertCostMetrics = insertCostMetrics;
+        log.info("R2DBC pool: {} connections", poolSize);
+    }
+
+    public Mono<Void> insert(long generatedAtMs, String payloadText) {
+        return Mono.defer(() -> {
+            long t1 = System.nanoTime();
+            return Mono.usingWhen(pool.create(), con -> {
+                var statement = con.createStatement(SQL).bind("$1", generatedAtMs);
+                if (payloadText != null) statement.bind("$2", payloadText);
+                else statement.bindNull("$2", String.class);
+                return Mono.from(statement.execute()).flatMap(r -> Mono.from(r.getRowsUpdated())).then();
+            }, Connection::close).doOnSuccess(v -> insertCostMetrics.record(t1, 1));
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.dispose();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.smoothing.experiment;
+
+import com.example.smoothing.generator.StochasticLoadGenerator;
+import com.example.smoothing.metrics.LatencyMetrics;
+import com.example.smoothing.metrics.ThroughputMetrics;
+import com.example.smoothing.service.ConsumerService;
+import com.example.smoothing.service.ProducerService;
+import com.example.smoothing.service.ReactiveConsumerService;
+import com.example.smoothing.smoothing.BackpressureGate;
+import com.example.smoothing.smoothing.Smoother;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * In-process replacement for the docker-driven phase script: runs the experiment matrix sequentially in one JVM.
+ * Per configuration: apply knobs → start a generator → warmup → measurement window (latency captured from
+ * {@link LatencyMetrics}, throughput from counters) → stop → drain until the consumer is idle → optional truncate.
+ * Results: one CSV row per configuration and the measurement histogram per configuration in an
+ * HdrHistogram log (compressed, tagged with the label; read with HistogramLogReader / HistogramLogAnalyzer).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "experiment.enabled", havingValue = "true")
+public class ExperimentRunner {
+    private static final String CSV_HEADER = "label,credits,backpressure,db,high_rate,batch_mean,measure_s,"
+            + "emitted,handled,throughput_rps,lat_mean_ms,lat_p50_ms,lat_p95_ms,lat_p99_ms,lat_p999_ms,lat_max_ms,shed,expired";
+
+    private final ProducerService producerService;
+    private final ConsumerService consumerService;
+    private final ObjectProvider<ReactiveConsumerService> reactiveConsumerService; // pipeline.mode=reactive only
+    private final BackpressureGate backpressureGate;
+    private final Smoother smoother; // the active one: the gate, or a token/leaky bucket
+    private final LatencyMetrics latencyMetrics;
+    private final ThroughputMetrics throughputMetrics;
+    private final JdbcTemplate jdbc;
+    private final ConfigurableApplicationContext ctx;
+    @Value("${backpressure.credits}")
+    private long defaultCredits;
+    @Value("${experiment.matrix}")
+    private String[] matrix;
+    @Value("${experiment.warmup-seconds}")
+    private long warmupSeconds;
+    @Value("${experiment.measure-seconds}")
+    private long measureSeconds;
+    @Value("${experiment.drain-timeout-seconds}")
+    private long drainTimeoutSeconds;
+    @Value("${experiment.truncate-db}")
+    private boolean truncateDb;
+    @Value("${experiment.output-dir}")
+    private String outputDir;
+    @Value("${experiment.exit-on-finish}")
+    private boolean exitOnFinish;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<ExperimentSpec> specs = new ArrayList<>(matrix.length);
+        for (String m : matrix) specs.add(ExperimentSpec.parse(m));
+        Thread t = new Thread(() -> runAll(specs), "experiment-runner");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void runAll(List<ExperimentSpec> specs) {
+        Path dir = Path.of(outputDir);
+        try {
+            Thread.sleep(10_000); // wait Kafka
+            Files.createDirectories(dir);
+            Path csv = dir.resolve("summary.csv");
+            boolean newCsv = Files.notExists(csv);
+            try (PrintStream csvOut = new PrintStream(Files.newOutputStream(csv, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+                 PrintStream hlogOut = new PrintStream(Files.newOutputStream(dir.resolve("latency.hlog"),
+                         StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                if (newCsv) csvOut.println(CSV_HEADER);
+                HistogramLogWriter hlog = new HistogramLogWriter(hlogOut);
+                hlog.outputLogFormatVersion();
+                hlog.outputLegend();
+                for (int i = 0; i < specs.size(); i++) {
+                    ExperimentSpec spec = specs.get(i);
+                    log.info("Experiment {}/{}: {}", i + 1, specs.size(), spec);
+                    csvOut.println(run(spec, hlog));
+                    csvOut.flush();
+                    hlogOut.flush();
+                }
+            }
+            log.info("Experiment matrix finished: {} configurations, results in {}", specs.size(), dir.toAbsolutePath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException e) {
+            log.error("Experiment output failed, matrix aborted", e);
+        } catch (Exception e) {
+            log.error("Experiment matrix aborted", e);
+        }
+        if (exitOnFinish) System.exit(SpringApplication.exit(ctx, () -> 0));
+    }
+
+    private String run(ExperimentSpec spec, HistogramLogWriter hlog) throws InterruptedException {
+        // every configuration starts from its own budget, credits=0 => the configured default, not the previous one
+        backpressureGate.resize(spec.credits() > 0 ? spec.credits() : defaultCredits);
+        ReactiveConsumerService reactive = reactiveConsumerService.getIfAvailable();
+        if (reactive != null) {
+            reactive.setBackpressureEnabled(spec.backpressure());
+            reactive.setDbEnabled(spec.db());
+        } else {
+            consumerService.setBackpressureEnabled(spec.backpressure());
+            consumerService.setDbEnabled(spec.db());
+        }
+
+        StochasticLoadGenerator generator = producerService.startGenerator(
+                spec.highRate(), spec.batchMean(), spec.backpressure(), null, false);
+        double seconds;
+        long handled, emitted, shed, expired;
+        Histogram latency;
+        try {
+            Thread.sleep(Duration.ofSeconds(warmupSeconds).toMillis());
+
+            latencyMetrics.startCapture();
+            long emitted0 = generator.getEmittedTasks();
+            long handled0 = throughputMetrics.getThroughputTotalCount();
+            long shed0 = backpressureGate.getShed().get();
+            long expired0 = backpressureGate.getExpired().get() + consumerExpired(reactive);
+            long t0 = System.nanoTime();
+            Thread.sleep(Duration.ofSeconds(measureSeconds).toMillis());
+            seconds = (System.nanoTime() - t0) / 1e9;
+            handled = throughputMetrics.getThroughputTotalCount() - handled0;
+            emitted = generator.getEmittedTasks() - emitted0;
+            shed = backpressureGate.getShed().get() - shed0;
+            expired = backpressureGate.getExpired().get() + consumerExpired(reactive) - expired0;
+            latency = latencyMetrics.stopCapture();
+        } finally {
+            generator.stop(); // also closes the rate function (trace file)
+        }
+        drain();
+        if (truncateDb && spec.db()) {
+            jdbc.execute("TRUNCATE events, events_audit RESTART IDENTITY");
+        }
+
+        latency.setTag(spec.label());
+        latency.setStartTimeStamp(System.currentTimeMillis() - (long) (seconds * 1000));
+        latency.setEndTimeStamp(System.currentTimeMillis());
+        hlog.outputIntervalHistogram(latency);
+
+        String row = String.format(Locale.ROOT, "%s,%d,%b,%b,%.1f,%.1f,%.1f,%d,%d,%.2f,%.2f,%d,%d,%d,%d,%d,%d,%d",
+                spec.label(), spec.credits(), spec.backpressure(), spec.db(), spec.highRate(), spec.batchMean(), seconds,
+                emitted, handled, handled / seconds, latency.getMean(),
+                latency.getValueAtPercentile(50), latency.getValueAtPercentile(95), latency.getValueAtPercentile(99),
+                latency.getValueAtPercentile(99.9), latency.getMaxValue(), shed, expired);
+        log.info("Experiment {} done: {}", spec.label(), row);
+        return row;
+    }
+
+    private long consumerExpired(ReactiveConsumerService reactive) {
+        return reactive != null ? reactive.getExpired().sum() : consumerService.getExpired().sum();
+    }
+
+    /** Waits until the active smoother is empty and the consumer handled nothing new for 2 s, or the drain timeout. */
+    private void drain() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(drainTimeoutSeconds).toNanos();
+        long last = throughputMetrics.getThroughputTotalCount();
+        int quietSeconds = 0;
+        while (System.nanoTime() < deadline && quietSeconds < 2) {
+            Thread.sleep(1_000);
+            long now = throughputMetrics.getThroughputTotalCount();
+            quietSeconds = (now == last && smoother.getQueueDepth() == 0) ? quietSeconds + 1 : 0;
+            last = now;
+        }
+        if (quietSeconds < 2) log.warn("Drain timed out, next configuration starts with a backlog");
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.smoothing.experiment;
+
+/**
+ * One configuration of the experiment matrix, same knobs as run_phase in scripts/run_with_warmup.sh.
+ * Spec: "label:credits:backpressure:db:highRate:batchMean", e.g. "pg_bp_1000:1000:true:true:50:5".
+ */
+public record ExperimentSpec(String label, int credits, boolean backpressure, boolean db, double highRate, double batchMean) {
+
+    public static ExperimentSpec parse(String spec) {
+        String[] f = spec.trim().split(":");
+        if (f.length != 6) {
+            throw new IllegalArgumentException("Bad experiment '" + spec + "', expected label:credits:backpressure:db:highRate:batchMean");
+        }
+        return new ExperimentSpec(f[0], Integer.parseInt(f[1]), Boolean.parseBoolean(f[2]), Boolean.parseBoolean(f[3]),
+                Double.parseDouble(f[4]), Double.parseDouble(f[5]));
+    }
+}
@@ -8,4 +8,6 @@ public interface RateFunction {
     double ratePerSecond(Instant t);
     /** A global finite upper bound for λ(t), required by thinning. */
     double upperBoundRatePerSecond();
+    /** Called by the generator for every accepted arrival; lets self-exciting rates react to their own output. */
+    default void onArrival(Instant t) { }
 }
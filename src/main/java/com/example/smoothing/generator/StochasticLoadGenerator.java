@@ -2,11 +2,13 @@ package com.example.smoothing.generator;
 
 import com.example.smoothing.generator.batchsize.BatchSizeSampler;
 import com.example.smoothing.generator.batchsize.GeometricBatchSize;
+import com.example.smoothing.metrics.StageLatencyMetrics;
 import com.example.smoothing.metrics.ThroughputMetrics;
-import com.example.smoothing.smoothing.BackpressureGate;
+import com.example.smoothing.smoothing.Smoother;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.scheduling.TaskScheduler;
@@ -17,8 +19,11 @@ import java.time.Instant;
 import java.util.Objects;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
 
 
 @Slf4j
@@ -32,10 +37,27 @@ public final class StochasticLoadGenerator {
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final ConfigurableApplicationContext ctx;
     private final Clock clock;
-    private final BackpressureGate gate;
+    private final Smoother smoother;              // null => run tasks directly
+    private final IntSupplier prioritySampler;    // traffic class per arrival
+    private final boolean exitOnStop;             // false => stop() leaves the JVM running (experiment runner)
+    private final ThroughputMetrics throughputMetrics;
+    private final StageLatencyMetrics stageLatencyMetrics;
 
     private final AtomicLong acceptedBatches = new AtomicLong();
     private final AtomicLong emittedTasks = new AtomicLong();
+    // λ of the latest thinning candidate: consumers read it instead of re-evaluating the (stateful, jittered,
+    // forward-only) rate function on other threads
+    private volatile double currentRate;
+
+    /** SCHEDULER: a TaskScheduler task per candidate/arrival. WHEEL: one dedicated tick-loop thread. */
+    public enum Engine { SCHEDULER, WHEEL }
+
+    private final Engine engine;
+    private final long tickNanos;
+    // WHEEL: lateness of fired arrivals vs their planned time, µs. Written by the tick thread only.
+    private final Histogram timingErrorMicros = new Histogram(60_000_000L, 3);
+    private volatile long timingErrorP99Micros;
+    private volatile long timingErrorMaxMicros;
 
     private ScheduledFuture<?> stopFuture;
 
@@ -48,7 +70,12 @@ public final class StochasticLoadGenerator {
             BatchSizeSampler batchSampler,
             Duration intraBatchSpread,
             Clock clock,
-            BackpressureGate backpressureGate, ThroughputMetrics throughputMetrics
+            Smoother smoother, ThroughputMetrics throughputMetrics,
+            StageLatencyMetrics stageLatencyMetrics,
+            Engine engine,
+            Duration tick,
+            IntSupplier prioritySampler,
+            Boolean exitOnStop
     ) {
         this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
         this.task = Objects.requireNonNull(task, "task");
@@ -64,13 +91,22 @@ public final class StochasticLoadGenerator {
         this.intraBatchSpread = (intraBatchSpread != null) ? intraBatchSpread : Duration.ZERO;
         if (this.intraBatchSpread.isNegative()) throw new IllegalArgumentException("intraBatchSpread must be >= 0");
         this.clock = (clock != null) ? clock : Clock.systemUTC();
-        this.gate = backpressureGate;
-        log.info("StochasticLoadGenerator initialized: λmax={}, spread={}ms, batchDist={}, rate={}, gate={}",
+        this.smoother = smoother;
+        this.prioritySampler = (prioritySampler != null) ? prioritySampler : () -> 0;
+        this.engine = (engine != null) ? engine : Engine.SCHEDULER;
+        this.tickNanos = (tick != null) ? tick.toNanos() : 1_000_000L;
+        if (this.tickNanos <= 0) throw new IllegalArgumentException("tick must be > 0");
+        this.exitOnStop = (exitOnStop != null) ? exitOnStop : true;
+        // not given => recorded into detached instances (not exported)
+        this.throughputMetrics = (throughputMetrics != null) ? throughputMetrics : new ThroughputMetrics(0);
+        this.stageLatencyMetrics = (stageLatencyMetrics != null) ? stageLatencyMetrics : new StageLatencyMetrics();
+        log.info("StochasticLoadGenerator initialized: λmax={}, spread={}ms, batchDist={}, rate={}, smoother={}, engine={}",
                 this.lambdaMax,
                 this.intraBatchSpread.toMillis(),
                 this.batchSampler.getClass().getSimpleName(),
                 this.rate.getClass().getSimpleName(),
-                this.gate);
+                this.smoother,
+                this.engine);
 
     }
 
@@ -80,7 +116,13 @@ public final class StochasticLoadGenerator {
     public void start(Duration duration) {
         log.info("Starting StochasticLoadGenerator, duration={}.", duration);
         if (!running.compareAndSet(false, true)) return;
-        scheduleNextCandidate(now());
+        if (engine == Engine.WHEEL) {
+            Thread t = new Thread(this::runWheel, "generator-tick");
+            t.setDaemon(true);
+            t.start();
+        } else {
+            scheduleNextCandidate(now());
+        }
         if (duration != null) {
             stopFuture = scheduler.schedule(this::stop, now().plus(duration));
         }
@@ -90,6 +132,14 @@ public final class StochasticLoadGenerator {
         if (!running.compareAndSet(true, false)) return;
         if (stopFuture != null) stopFuture.cancel(false);
         log.info("StochasticLoadGenerator stopping. Emitted tasks={}, batches={}.", emittedTasks.get(), acceptedBatches.get());
+        if (rate instanceof AutoCloseable closeable) { // e.g. TraceReplayRate holds the trace file open
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Closing rate function failed", e);
+            }
+        }
+        if (!exitOnStop) return;
         new Thread(() -> {
             try {
                 Thread.sleep(40_000);
@@ -114,16 +164,19 @@ public final class StochasticLoadGenerator {
         scheduler.schedule(() -> tryAcceptAt(candidateAt), candidateAt);
     }
 
-    private void tryAcceptAt(Instant candidateAt) {
+    // package-private for benchmarks
+    void tryAcceptAt(Instant candidateAt) {
         if (!running.get()) return;
         double lambdaHere = Math.max(0.0, rate.ratePerSecond(candidateAt));
         if (!Double.isFinite(lambdaHere)) lambdaHere = 0.0;
+        currentRate = lambdaHere;
         double acceptP = Math.min(1.0, lambdaHere / lambdaMax);
         double u = ThreadLocalRandom.current().nextDouble();
         if (u < acceptP) {
             // Accepted arrival — emit a compound batch
             int k = Math.max(1, batchSampler.sample());
             acceptedBatches.incrementAndGet();
+            rate.onArrival(candidateAt);
             emitBatch(k, candidateAt);
         }
         // Whether accepted or not, schedule next candidate measured from this candidate time (memoryless property)
@@ -132,7 +185,8 @@ public final class StochasticLoadGenerator {
 
     private void emitBatch(int k, Instant t0) {
         if (intraBatchSpread.isZero() || k == 1) {
-            for (int i = 0; i < k; i++) safeRun();
+            long lateNanos = Duration.between(t0, now()).toNanos();
+            for (int i = 0; i < k; i++) safeRun(lateNanos);
             emittedTasks.addAndGet(k);
             return;
         }
@@ -143,27 +197,88 @@ public final class StochasticLoadGenerator {
             long jitter = (step > 0) ? tlr.nextLong(0, Math.max(1, step)) : 0L;
             Instant when = t0.plusNanos((long) i * step + jitter);
             scheduler.schedule(() -> {
-                safeRun();
+                safeRun(Duration.between(when, now()).toNanos());
                 emittedTasks.incrementAndGet();
             }, when);
         }
     }
 
-    private void safeRun() {
+    // === Tick-loop engine: thinning + timing wheel on one thread ===
+
+    private void runWheel() {
+        TimingWheel wheel = new TimingWheel(tickNanos, 1024);
+        Instant startInstant = now();
+        long startNanos = System.nanoTime();
+        long nextCandidate = sampleExpNanos(lambdaMax);   // nanos since start
+        long nextPublish = TimeUnit.SECONDS.toNanos(1);
+        long tick = 0;
+        while (running.get()) {
+            long wait = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            long now = System.nanoTime() - startNanos;
+
+            // All thinning candidates due in this tick
+            while (nextCandidate <= now) {
+                double lambdaHere = Math.max(0.0, rate.ratePerSecond(startInstant.plusNanos(nextCandidate)));
+                if (!Double.isFinite(lambdaHere)) lambdaHere = 0.0;
+                currentRate = lambdaHere;
+                if (ThreadLocalRandom.current().nextDouble() < Math.min(1.0, lambdaHere / lambdaMax)) {
+                    int k = Math.max(1, batchSampler.sample());
+                    acceptedBatches.incrementAndGet();
+                    rate.onArrival(startInstant.plusNanos(nextCandidate));
+                    planBatch(wheel, k, nextCandidate);
+                }
+                nextCandidate += sampleExpNanos(lambdaMax);
+            }
+            // All arrivals due in this tick
+            final long firedAt = now;
+            wheel.advance(now, deadline -> {
+                timingErrorMicros.recordValue(Math.min((firedAt - deadline) / 1_000, timingErrorMicros.getHighestTrackableValue()));
+                safeRun(firedAt - deadline);
+                emittedTasks.incrementAndGet();
+            });
+            if (now >= nextPublish) {
+                timingErrorP99Micros = timingErrorMicros.getValueAtPercentile(99);
+                timingErrorMaxMicros = timingErrorMicros.getMaxValue();
+                timingErrorMicros.reset();
+                nextPublish = now + TimeUnit.SECONDS.toNanos(1);
+            }
+            tick = now / tickNanos;
+        }
+    }
+
+    private void planBatch(TimingWheel wheel, int k, long t0) {
+        if (intraBatchSpread.isZero() || k == 1) {
+            for (int i = 0; i < k; i++) wheel.add(t0);
+            return;
+        }
+        long step = Math.max(0, intraBatchSpread.toNanos()) / k;
+        ThreadLocalRandom tlr = ThreadLocalRandom.current();
+        for (int i = 0; i < k; i++) {
+            long jitter = (step > 0) ? tlr.nextLong(0, Math.max(1, step)) : 0L;
+            wheel.add(t0 + (long) i * step + jitter);
+        }
+    }
+
+    /** lateNanos: planned arrival → now, i.e. the generated → gate-enqueued stage. */
+    private void safeRun(long lateNanos) {
+        stageLatencyMetrics.recordNanos(StageLatencyMetrics.Stage.GENERATOR, lateNanos);
         try {
             final long t0 = System.currentTimeMillis(); // Created time
-            if (gate == null) {
-                task.run(t0);
+            final int priority = prioritySampler.getAsInt();
+            if (smoother == null) {
+                task.run(t0, priority);
             } else {
-                gate.enqueue(() -> task.run(t0));
+                smoother.enqueue(t0, priority, task);
             }
         } catch (Throwable t) {
             log.error("task.run() failed", t);
         }
-        ThroughputMetrics.incrementIngressRateCount();
+        throughputMetrics.incrementIngressRateCount();
     }
 
-    private long sampleExpNanos(double lambdaPerSec) {
+    // package-private for benchmarks
+    long sampleExpNanos(double lambdaPerSec) {
         // Exp(λ): -ln(U)/λ (U~Uniform(0,1))
         double u = ThreadLocalRandom.current().nextDouble();
         double delaySec = (-Math.log(1.0 - u)) / lambdaPerSec;
@@ -177,4 +292,19 @@ public final class StochasticLoadGenerator {
     public long getEmittedTasks() {
         return emittedTasks.get();
     }
+
+    /** Rate (arrivals/s) the generator is currently running at, as computed for its latest candidate. */
+    public double getCurrentRate() {
+        return currentRate;
+    }
+
+    /** WHEEL engine: p99 lateness of fired arrivals over the last second, µs. */
+    public long getTimingErrorP99Micros() {
+        return timingErrorP99Micros;
+    }
+
+    /** WHEEL engine: max lateness of fired arrivals over the last second, µs. */
+    public long getTimingErrorMaxMicros() {
+        return timingErrorMaxMicros;
+    }
 }
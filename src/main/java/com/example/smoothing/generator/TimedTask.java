@@ -2,5 +2,6 @@ package com.example.smoothing.generator;
 
 @FunctionalInterface
 public interface TimedTask {
-    void run(long createdTime);
+    /** @param priority traffic class, 0 = most urgent */
+    void run(long createdTime, int priority);
 }
@@ -0,0 +1,72 @@
+package com.example.smoothing.generator;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hashed timing wheel of deadlines (nanos >= 0, relative to the engine start). Single-threaded.
+ * Slot = (deadline / tick) mod slots. Deadlines further than one revolution stay in their slot
+ * until their round comes, so any horizon works; with the default 1 ms × 1024 slots
+ * the intra-batch spread (~200 ms) never wraps.
+ * No per-entry objects: each slot is a growable long[].
+ */
+final class TimingWheel {
+    private final long tickNanos;
+    private final int mask;
+    private final long[][] slots;
+    private final int[] sizes;
+    private long lastTick = -1;
+    private int size;
+
+    TimingWheel(long tickNanos, int slotCount) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("tickNanos must be > 0");
+        if (slotCount <= 0 || Integer.bitCount(slotCount) != 1)
+            throw new IllegalArgumentException("slotCount must be a power of two");
+        this.tickNanos = tickNanos;
+        this.mask = slotCount - 1;
+        this.slots = new long[slotCount][8];
+        this.sizes = new int[slotCount];
+    }
+
+    void add(long deadlineNanos) {
+        long tick = deadlineNanos / tickNanos;
+        if (tick <= lastTick) tick = lastTick + 1; // already passed → next advance() visits it
+        int idx = (int) (tick & mask);
+        long[] slot = slots[idx];
+        if (sizes[idx] == slot.length) {
+            slot = Arrays.copyOf(slot, slot.length * 2);
+            slots[idx] = slot;
+        }
+        slot[sizes[idx]++] = deadlineNanos;
+        size++;
+    }
+
+    /** Fires (deadline order within a slot is not guaranteed) every entry with deadline <= now. */
+    void advance(long nowNanos, LongConsumer fire) {
+        long nowTick = nowNanos / tickNanos;
+        // at most one full revolution: later ticks map onto the same slots again
+        long from = Math.max(lastTick + 1, nowTick - mask);
+        for (long t = from; t <= nowTick; t++) {
+            int idx = (int) (t & mask);
+            long[] slot = slots[idx];
+            int n = sizes[idx];
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                long deadline = slot[i];
+                if (deadline <= nowNanos) {
+                    size--;
+                    fire.accept(deadline);
+                } else {
+                    slot[kept++] = deadline; // later round
+                }
+            }
+            sizes[idx] = kept;
+        }
+        // the current tick may still hold deadlines later within it → revisit it next time
+        lastTick = nowTick - 1;
+    }
+
+    int size() {
+        return size;
+    }
+}
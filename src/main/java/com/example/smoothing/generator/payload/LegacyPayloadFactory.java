@@ -0,0 +1,12 @@
+package com.example.smoothing.generator.payload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** The original payload format (~60 chars), kept for comparison with earlier runs. */
+public final class LegacyPayloadFactory implements PayloadFactory {
+    @Override
+    public String next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return "payload-" + random.nextDouble() + random.nextDouble() + random.nextDouble();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.smoothing.generator.payload;
+
+import java.util.Locale;
+
+/** Message payload source; called on the generator thread for every task, so next() must not allocate. */
+public interface PayloadFactory {
+    String next();
+
+    /**
+     * distribution: fixed (size) | uniform (min-size..max-size) | lognormal (median = size, sigma, capped at max-size)
+     * | legacy (the old "payload-" + 3 random doubles, allocates per call).
+     */
+    static PayloadFactory of(String distribution, int size, int minSize, int maxSize, double sigma, int poolSize) {
+        return switch (distribution.toLowerCase(Locale.ROOT)) {
+            case "fixed" -> PooledPayloadFactory.fixed(size, poolSize);
+            case "uniform" -> PooledPayloadFactory.uniform(minSize, maxSize, poolSize);
+            case "lognormal" -> PooledPayloadFactory.logNormal(size, sigma, maxSize, poolSize);
+            case "legacy" -> new LegacyPayloadFactory();
+            default -> throw new IllegalArgumentException("Unknown payload distribution: " + distribution);
+        };
+    }
+}
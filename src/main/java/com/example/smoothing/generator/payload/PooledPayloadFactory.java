@@ -0,0 +1,82 @@
+package com.example.smoothing.generator.payload;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Payloads are prebuilt once: a pool of strings whose lengths follow the configured distribution,
+ * cut at random offsets from one random alphanumeric byte block (no JSON escaping, distinct values for the DB).
+ * next() is a ThreadLocalRandom index into the pool — no allocation, no shared Random.
+ * Pool memory is capped at {@link #MAX_POOL_BYTES}, so 10 KB payloads get a smaller pool.
+ */
+@Slf4j
+public final class PooledPayloadFactory implements PayloadFactory {
+    static final long MAX_POOL_BYTES = 32L << 20;
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private final String[] pool;
+    private final int mask;
+    @Getter
+    private final double meanSize;
+
+    /** sizeSampler: random bits → payload length in [0, maxSize]. */
+    private PooledPayloadFactory(IntUnaryOperator sizeSampler, int maxSize, int poolSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("max size must be >= 0");
+        long byMemory = Math.max(16, MAX_POOL_BYTES / Math.max(1, maxSize));
+        int n = Integer.highestOneBit((int) Math.max(1, Math.min(poolSize, byMemory)));
+        SplittableRandom random = new SplittableRandom(42);
+        byte[] block = new byte[maxSize + n];
+        for (int i = 0; i < block.length; i++) block[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+
+        this.pool = new String[n];
+        this.mask = n - 1;
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            int len = Math.min(maxSize, Math.max(0, sizeSampler.applyAsInt(random.nextInt())));
+            pool[i] = new String(block, random.nextInt(n), len, StandardCharsets.US_ASCII);
+            total += len;
+        }
+        this.meanSize = (double) total / n;
+        log.info("Payload pool: {} entries, mean size {} B, max {} B", n, String.format("%.1f", meanSize), maxSize);
+    }
+
+    public static PooledPayloadFactory fixed(int size, int poolSize) {
+        return new PooledPayloadFactory(bits -> size, size, poolSize);
+    }
+
+    public static PooledPayloadFactory uniform(int minSize, int maxSize, int poolSize) {
+        if (minSize > maxSize) throw new IllegalArgumentException("min size must be <= max size");
+        int span = maxSize - minSize + 1;
+        return new PooledPayloadFactory(bits -> minSize + Math.floorMod(bits, span), maxSize, poolSize);
+    }
+
+    /** Heavy-ish tail typical for real messages: median size, log-space sigma, truncated at maxSize. */
+    public static PooledPayloadFactory logNormal(int median, double sigma, int maxSize, int poolSize) {
+        if (median <= 0 || !(sigma >= 0)) throw new IllegalArgumentException("median must be > 0, sigma >= 0");
+        SplittableRandom gaussian = new SplittableRandom(7);
+        return new PooledPayloadFactory(bits -> (int) Math.round(median * Math.exp(sigma * nextGaussian(gaussian))),
+                maxSize, poolSize);
+    }
+
+    private static double nextGaussian(SplittableRandom random) {
+        // Box–Muller; only used while building the pool
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+
+    @Override
+    public String next() {
+        return pool[ThreadLocalRandom.current().nextInt() & mask];
+    }
+
+    public int getPoolSize() {
+        return pool.length;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.smoothing.generator.rate;
+
+import com.example.smoothing.generator.RateFunction;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Day/night profile compressed into dayLength: night rate at the trough, peak rate at peakHour,
+ * with a raised-cosine shape sharpened by {@code sharpness} (1 = plain cosine, larger = narrower busy hours).
+ */
+public final class DiurnalRate implements RateFunction {
+    private final double night;
+    private final double peak;
+    private final long dayMillis;
+    private final double peakFrac;
+    private final double sharpness;
+    private final long startMillis;
+
+    private DiurnalRate(double night, double peak, Duration dayLength, double peakHour, double sharpness, Instant start) {
+        if (!(night >= 0.0) || !(peak > 0.0) || peak < night) throw new IllegalArgumentException("need 0 <= night <= peak, peak > 0");
+        if (dayLength == null || dayLength.toMillis() <= 0) throw new IllegalArgumentException("dayLength must be > 0");
+        if (peakHour < 0 || peakHour >= 24) throw new IllegalArgumentException("peakHour must be in [0,24)");
+        if (!(sharpness >= 1.0)) throw new IllegalArgumentException("sharpness must be >= 1");
+        this.night = night;
+        this.peak = peak;
+        this.dayMillis = dayLength.toMillis();
+        this.peakFrac = peakHour / 24.0;
+        this.sharpness = sharpness;
+        this.startMillis = start.toEpochMilli();
+    }
+
+    /** The run starts at midnight of the compressed day. */
+    public static DiurnalRate of(double night, double peak, Duration dayLength, double peakHour, double sharpness, Instant start) {
+        return new DiurnalRate(night, peak, dayLength, peakHour, sharpness, start);
+    }
+
+    @Override
+    public double ratePerSecond(Instant t) {
+        double frac = Math.floorMod(t.toEpochMilli() - startMillis, dayMillis) / (double) dayMillis;
+        double shape = Math.pow((1 + Math.cos(2 * Math.PI * (frac - peakFrac))) / 2, sharpness);
+        return night + (peak - night) * shape;
+    }
+
+    @Override
+    public double upperBoundRatePerSecond() {
+        return peak;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.smoothing.generator.rate;
+
+import com.example.smoothing.generator.RateFunction;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Self-exciting (Hawkes) arrivals: λ(t) = μ + Σ α·e^{-β (t - tᵢ)} over past arrivals tᵢ.
+ * Each arrival raises the rate by α = branching·β, which then decays with time constant 1/β;
+ * long-run mean rate is μ / (1 - branching). Bursts beget bursts — clustered traffic a Poisson source lacks.
+ * Thinning needs a finite bound, so λ is capped at {@code cap}.
+ */
+public final class HawkesRate implements RateFunction {
+    private final double base;
+    private final double jump;
+    private final double decayPerNano;
+    private final double cap;
+    private double excitation; // at lastNanos
+    private long lastNanos;
+
+    private HawkesRate(double base, double branching, Duration decay, double cap) {
+        if (!(base > 0.0)) throw new IllegalArgumentException("base must be > 0");
+        if (!(branching >= 0.0) || branching >= 1.0) throw new IllegalArgumentException("branching must be in [0,1)");
+        if (decay == null || decay.toNanos() <= 0) throw new IllegalArgumentException("decay must be > 0");
+        if (!(cap >= base)) throw new IllegalArgumentException("cap must be >= base");
+        double beta = 1e9 / decay.toNanos(); // 1/s
+        this.base = base;
+        this.jump = branching * beta;
+        this.decayPerNano = 1.0 / decay.toNanos();
+        this.cap = cap;
+    }
+
+    /** base = μ (events/s), branching = expected children per event, decay = 1/β. */
+    public static HawkesRate of(double base, double branching, Duration decay, double cap) {
+        return new HawkesRate(base, branching, decay, cap);
+    }
+
+    @Override
+    public synchronized double ratePerSecond(Instant t) {
+        return Math.min(cap, base + excitationAt(nanos(t)));
+    }
+
+    @Override
+    public synchronized void onArrival(Instant t) {
+        long now = nanos(t);
+        excitation = excitationAt(now) + jump;
+        lastNanos = Math.max(lastNanos, now);
+    }
+
+    private double excitationAt(long now) {
+        if (excitation == 0.0) return 0.0;
+        long dt = now - lastNanos;
+        return dt <= 0 ? excitation : excitation * Math.exp(-dt * decayPerNano);
+    }
+
+    private static long nanos(Instant t) {
+        return t.getEpochSecond() * 1_000_000_000L + t.getNano();
+    }
+
+    @Override
+    public double upperBoundRatePerSecond() {
+        return cap;
+    }
+}
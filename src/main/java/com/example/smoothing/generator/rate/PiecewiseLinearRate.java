@@ -0,0 +1,62 @@
+package com.example.smoothing.generator.rate;
+
+import com.example.smoothing.generator.RateFunction;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Linear interpolation between (offset, rate) points, repeated with the last offset as period.
+ * Spec: "seconds:rate,..." e.g. "0:2,30:50,45:50,60:2" (offsets ascending, first must be 0).
+ */
+public final class PiecewiseLinearRate implements RateFunction {
+    private final long[] offsetsMillis;
+    private final double[] rates;
+    private final long periodMillis;
+    private final long startMillis;
+    private final double max;
+
+    private PiecewiseLinearRate(long[] offsetsMillis, double[] rates, Instant start) {
+        if (offsetsMillis.length < 2) throw new IllegalArgumentException("need at least 2 points");
+        if (offsetsMillis[0] != 0) throw new IllegalArgumentException("first point must be at offset 0");
+        for (int i = 1; i < offsetsMillis.length; i++) {
+            if (offsetsMillis[i] <= offsetsMillis[i - 1]) throw new IllegalArgumentException("offsets must be ascending");
+        }
+        for (double r : rates) if (!(r >= 0.0)) throw new IllegalArgumentException("rates must be >= 0");
+        this.offsetsMillis = offsetsMillis;
+        this.rates = rates;
+        this.periodMillis = offsetsMillis[offsetsMillis.length - 1];
+        this.startMillis = start.toEpochMilli();
+        this.max = Arrays.stream(rates).max().orElse(0.0);
+        if (!(max > 0.0)) throw new IllegalArgumentException("at least one rate must be > 0");
+    }
+
+    public static PiecewiseLinearRate parse(String spec, Instant start) {
+        String[] parts = spec.split(",");
+        long[] offsets = new long[parts.length];
+        double[] rates = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] kv = parts[i].trim().split(":");
+            if (kv.length != 2) throw new IllegalArgumentException("Bad point '" + parts[i] + "', expected seconds:rate");
+            offsets[i] = Math.round(Double.parseDouble(kv[0].trim()) * 1000);
+            rates[i] = Double.parseDouble(kv[1].trim());
+        }
+        return new PiecewiseLinearRate(offsets, rates, start);
+    }
+
+    @Override
+    public double ratePerSecond(Instant t) {
+        long x = Math.floorMod(t.toEpochMilli() - startMillis, periodMillis);
+        int i = Arrays.binarySearch(offsetsMillis, x);
+        if (i >= 0) return rates[i];
+        int hi = -i - 1; // first offset > x; hi >= 1 since offsets[0] == 0
+        int lo = hi - 1;
+        double frac = (x - offsetsMillis[lo]) / (double) (offsetsMillis[hi] - offsetsMillis[lo]);
+        return rates[lo] + (rates[hi] - rates[lo]) * frac;
+    }
+
+    @Override
+    public double upperBoundRatePerSecond() {
+        return max;
+    }
+}
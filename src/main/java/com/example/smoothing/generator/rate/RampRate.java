@@ -0,0 +1,38 @@
+package com.example.smoothing.generator.rate;
+
+import com.example.smoothing.generator.RateFunction;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/** Linear ramp from → to over duration, then holds {@code to}. Finds the knee of a smoothing setting. */
+public final class RampRate implements RateFunction {
+    private final double from;
+    private final double to;
+    private final long durationMillis;
+    private final long startMillis;
+
+    private RampRate(double from, double to, Duration duration, Instant start) {
+        if (!(from >= 0.0) || !(to >= 0.0) || Math.max(from, to) <= 0.0) throw new IllegalArgumentException("rates must be >= 0, one > 0");
+        if (duration == null || duration.toMillis() <= 0) throw new IllegalArgumentException("duration must be > 0");
+        this.from = from;
+        this.to = to;
+        this.durationMillis = duration.toMillis();
+        this.startMillis = start.toEpochMilli();
+    }
+
+    public static RampRate of(double from, double to, Duration duration, Instant start) {
+        return new RampRate(from, to, duration, start);
+    }
+
+    @Override
+    public double ratePerSecond(Instant t) {
+        double frac = Math.min(1.0, Math.max(0.0, (t.toEpochMilli() - startMillis) / (double) durationMillis));
+        return from + (to - from) * frac;
+    }
+
+    @Override
+    public double upperBoundRatePerSecond() {
+        return Math.max(from, to);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.smoothing.generator.rate;
+
+import com.example.smoothing.generator.RateFunction;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/** λ(t) = mean + amplitude · sin(2π (t - start) / period); smooth counterpart of SquareWaveRate. */
+public final class SineRate implements RateFunction {
+    private final double mean;
+    private final double amplitude;
+    private final long periodMillis;
+    private final long startMillis;
+
+    private SineRate(double min, double max, Duration period, Instant start) {
+        if (!(min >= 0.0) || !(max > 0.0) || max < min) throw new IllegalArgumentException("need 0 <= min <= max, max > 0");
+        if (period == null || period.toMillis() <= 0) throw new IllegalArgumentException("period must be > 0");
+        this.mean = (min + max) / 2;
+        this.amplitude = (max - min) / 2;
+        this.periodMillis = period.toMillis();
+        this.startMillis = start.toEpochMilli();
+    }
+
+    public static SineRate of(double min, double max, Duration period, Instant start) {
+        return new SineRate(min, max, period, start);
+    }
+
+    @Override
+    public double ratePerSecond(Instant t) {
+        double frac = Math.floorMod(t.toEpochMilli() - startMillis, periodMillis) / (double) periodMillis;
+        return Math.max(0.0, mean + amplitude * Math.sin(2 * Math.PI * frac));
+    }
+
+    @Override
+    public double upperBoundRatePerSecond() {
+        return mean + amplitude;
+    }
+}
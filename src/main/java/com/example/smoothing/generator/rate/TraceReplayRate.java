@@ -0,0 +1,215 @@
+package com.example.smoothing.generator.rate;
+
+import com.example.smoothing.generator.RateFunction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Replays recorded arrival counts. The trace is a text file of "epochMillis,count" lines, ascending
+ * (as exported from the metrics store; blank, '#' and header lines are skipped). Line i covers
+ * [tsᵢ, tsᵢ₊₁) and gives λ = countᵢ / (tsᵢ₊₁ - tsᵢ).
+ * The file is memory-mapped in {@link #SEGMENT_BYTES} windows and read forward lazily as time passes,
+ * so multi-GB traces never touch the heap. speedUp > 1 compresses trace time (and scales λ by the same factor).
+ * At the end the trace loops or, with loop=false, the rate drops to 0.
+ */
+@Slf4j
+public final class TraceReplayRate implements RateFunction, AutoCloseable {
+    static final long SEGMENT_BYTES = 64L << 20;
+
+    private final Cursor cursor;
+    private final double speedUp;
+    private final boolean loop;
+    private final long startMillis;
+    private final long traceStart;
+    private final double max;
+
+    // current bucket [curTs, nextTs) in trace time, already shifted by cycleOffset
+    private long curTs;
+    private long curCount;
+    private long nextTs;
+    private long nextCount;
+    private long lastWidth;
+    private long cycleOffset;
+    private boolean lastLine;
+    private boolean ended;
+    private boolean closed;
+
+    private TraceReplayRate(Path file, double speedUp, boolean loop, double maxRate, Instant start) {
+        if (!(speedUp > 0.0)) throw new IllegalArgumentException("speedUp must be > 0");
+        this.cursor = new Cursor(file);
+        this.speedUp = speedUp;
+        this.loop = loop;
+        this.startMillis = start.toEpochMilli();
+        if (!cursor.next()) throw new IllegalArgumentException("Trace " + file + " has no data lines");
+        curTs = cursor.ts;
+        curCount = cursor.count;
+        if (!cursor.next()) throw new IllegalArgumentException("Trace " + file + " needs at least 2 lines");
+        nextTs = cursor.ts;
+        nextCount = cursor.count;
+        lastWidth = nextTs - curTs;
+        this.traceStart = curTs;
+        this.max = maxRate > 0 ? maxRate : scanMaxRate(file) * speedUp;
+        if (!(max > 0.0)) throw new IllegalArgumentException("Trace " + file + " has no arrivals");
+        log.info("Trace replay: {} ({} bytes), speedUp={}, loop={}, upper bound {} rps",
+                file, cursor.size, speedUp, loop, String.format("%.1f", max));
+    }
+
+    /** maxRate <= 0: bound is found by one sequential pass over the file at startup. */
+    public static TraceReplayRate of(Path file, double speedUp, boolean loop, double maxRate, Instant start) {
+        return new TraceReplayRate(file, speedUp, loop, maxRate, start);
+    }
+
+    @Override
+    public synchronized double ratePerSecond(Instant t) {
+        if (closed) return 0.0;
+        long traceNow = traceStart + (long) ((t.toEpochMilli() - startMillis) * speedUp);
+        while (!ended && traceNow >= nextTs) advance();
+        if (ended || traceNow < curTs) return 0.0;
+        return Math.min(max, curCount * 1000.0 / (nextTs - curTs) * speedUp);
+    }
+
+    private void advance() {
+        if (lastLine) {
+            ended = true;
+            return;
+        }
+        curTs = nextTs;
+        curCount = nextCount;
+        if (cursor.next()) {
+            nextTs = cursor.ts + cycleOffset;
+            nextCount = cursor.count;
+            lastWidth = Math.max(1, nextTs - curTs);
+            return;
+        }
+        // the last line has no successor: it lasts as long as the line before it
+        if (loop) {
+            cycleOffset = curTs + lastWidth - traceStart;
+            cursor.rewind();
+            cursor.next();
+            nextTs = cursor.ts + cycleOffset;
+            nextCount = cursor.count;
+        } else {
+            nextTs = curTs + lastWidth;
+            lastLine = true;
+        }
+    }
+
+    private static double scanMaxRate(Path file) {
+        Cursor scan = new Cursor(file);
+        double max = 0.0;
+        scan.next();
+        long ts = scan.ts;
+        long count = scan.count;
+        long width = 0;
+        while (scan.next()) {
+            width = scan.ts - ts;
+            if (width > 0) max = Math.max(max, count * 1000.0 / width);
+            ts = scan.ts;
+            count = scan.count;
+        }
+        if (width > 0) max = Math.max(max, count * 1000.0 / width); // last line, same width as the one before
+        scan.close();
+        return max;
+    }
+
+    @Override
+    public double upperBoundRatePerSecond() {
+        return max;
+    }
+
+    /** Releases the trace file; the rate is 0 from then on. */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        cursor.close();
+    }
+
+    /** Forward-only line parser over a sliding mapped window; no per-line allocation. */
+    private static final class Cursor {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer segment;
+        private long segmentStart;
+        private long segmentEnd;
+        private long pos;
+        long ts;
+        long count;
+
+        Cursor(Path file) {
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ);
+                this.size = channel.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open trace " + file, e);
+            }
+        }
+
+        void rewind() {
+            pos = 0;
+        }
+
+        /** Parses the next data line into ts/count; false at end of file. */
+        boolean next() {
+            while (pos < size) {
+                int b = byteAt(pos);
+                if (b < '0' || b > '9') { // blank, comment or header line
+                    skipLine();
+                    continue;
+                }
+                long a = 0;
+                while (pos < size && (b = byteAt(pos)) >= '0' && b <= '9') {
+                    a = a * 10 + (b - '0');
+                    pos++;
+                }
+                while (pos < size && ((b = byteAt(pos)) == ',' || b == ' ' || b == ';' || b == '\t')) pos++;
+                long c = 0;
+                while (pos < size && (b = byteAt(pos)) >= '0' && b <= '9') {
+                    c = c * 10 + (b - '0');
+                    pos++;
+                }
+                skipLine();
+                ts = a;
+                count = c;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipLine() {
+            while (pos < size && byteAt(pos) != '\n') pos++;
+            pos++;
+        }
+
+        private int byteAt(long p) {
+            if (p < segmentStart || p >= segmentEnd) map(p);
+            return segment.get((int) (p - segmentStart));
+        }
+
+        private void map(long p) {
+            try {
+                long len = Math.min(SEGMENT_BYTES, size - p);
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, p, len);
+                segmentStart = p;
+                segmentEnd = p + len;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map trace at offset " + p, e);
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package com.example.smoothing.metrics;
 
+import com.example.smoothing.db.BatchingEventWriter;
+import com.example.smoothing.db.LaneEventWriter;
+import com.example.smoothing.service.ConsumerService;
 import com.example.smoothing.service.ProducerService;
+import com.example.smoothing.service.ProducerTuning;
+import com.example.smoothing.service.ReactiveConsumerService;
 import com.example.smoothing.smoothing.BackpressureGate;
+import com.example.smoothing.smoothing.Smoother;
+import com.example.smoothing.smoothing.limit.ConsumerLagMonitor;
+import com.example.smoothing.smoothing.remote.RemoteCreditClient;
+import com.example.smoothing.smoothing.remote.RemoteCreditIssuer;
 import io.micrometer.core.instrument.Gauge;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -12,32 +23,244 @@ import org.springframework.stereotype.Component;
 public class GaugeRegistry {
     private final io.micrometer.core.instrument.MeterRegistry registry;
     private final BackpressureGate backpressureGate;
+    private final Smoother smoother;
     private final ProducerService producerService;
+    private final BatchingEventWriter batchingEventWriter;
+    private final LaneEventWriter laneEventWriter;
+    private final ProducerTuning producerTuning;
+    private final ConsumerService consumerService;
+    private final RemoteCreditIssuer remoteCreditIssuer;
+    private final RemoteCreditClient remoteCreditClient;
+    private final ConsumerLagMonitor consumerLagMonitor;
+    private final ObjectProvider<ReactiveConsumerService> reactiveConsumerService;
+    private final LatencyMetrics latencyMetrics;
+    private final ThroughputMetrics throughputMetrics;
+    private final StageLatencyMetrics stageLatencyMetrics;
+    private final ProducerSendMetrics producerSendMetrics;
+    private final InsertCostMetrics insertCostMetrics;
+    @Value("${db.schema-profile}")
+    private String schemaProfile;
 
     @PostConstruct
     void init() {
         //throughput
-        Gauge.builder("throughput", ThroughputMetrics::getCurrentThroughput)
+        Gauge.builder("throughput", throughputMetrics::getCurrentThroughput)
                 .register(registry);
-        Gauge.builder("ingressRate", ThroughputMetrics::getCurrentIngressRate)
+        Gauge.builder("ingressRate", throughputMetrics::getCurrentIngressRate)
                 .register(registry);
         //count total
         Gauge.builder("count.emitted", () -> producerService.getStochasticGenerator().getEmittedTasks())
                 .register(registry);
-        Gauge.builder("count.handled", ThroughputMetrics::getThroughputTotalCount)
+        Gauge.builder("count.handled", throughputMetrics::getThroughputTotalCount)
                 .register(registry);
-        //latency
-        Gauge.builder("latency.avg", () -> LatencyMetrics.getHistogramCopy().getMean())
+        //generator timing error (wheel engine), µs
+        Gauge.builder("generator.timingError.p99", () -> producerService.getStochasticGenerator().getTimingErrorP99Micros())
                 .register(registry);
-        Gauge.builder("latency.p99", () -> LatencyMetrics.getHistogramCopy().getValueAtPercentile(99))
+        Gauge.builder("generator.timingError.max", () -> producerService.getStochasticGenerator().getTimingErrorMaxMicros())
                 .register(registry);
-        Gauge.builder("latency.p95", () -> LatencyMetrics.getHistogramCopy().getValueAtPercentile(95))
+        //latency: since start, as before (dashboards, earlier runs); cached per interval, no histogram copies on scrape
+        Gauge.builder("latency.avg", () -> latencyMetrics.getTotal().mean())
                 .register(registry);
+        Gauge.builder("latency.p99", () -> latencyMetrics.getTotal().p99())
+                .register(registry);
+        Gauge.builder("latency.p95", () -> latencyMetrics.getTotal().p95())
+                .register(registry);
+        //latency: sliding window of the last metrics.latency.window-seconds
+        Gauge.builder("latency.window.avg", () -> latencyMetrics.getWindow().mean())
+                .register(registry);
+        Gauge.builder("latency.window.p99", () -> latencyMetrics.getWindow().p99())
+                .register(registry);
+        Gauge.builder("latency.window.p95", () -> latencyMetrics.getWindow().p95())
+                .register(registry);
+        //latency: last interval (per HIGH/LOW phase) and since start
+        Gauge.builder("latency.interval.p99", () -> latencyMetrics.getLastInterval().p99())
+                .register(registry);
+        Gauge.builder("latency.interval.avg", () -> latencyMetrics.getLastInterval().mean())
+                .register(registry);
+        Gauge.builder("latency.total.p99", () -> latencyMetrics.getTotal().p99())
+                .register(registry);
+        //gate dispatch -> consumer done, last interval (what the adaptive credit limit follows)
+        Gauge.builder("latency.downstream.p99", () -> latencyMetrics.getDownstreamLastInterval().p99())
+                .register(registry);
+        //per-stage latency breakdown, last interval, µs (see StageLatencyMetrics);
+        //stages do not add up: broker is measured from gate dispatch, so it contains send (the producer ack wait)
+        for (StageLatencyMetrics.Stage stage : StageLatencyMetrics.Stage.values()) {
+            String name = stage.name().toLowerCase();
+            Gauge.builder("latency.stage.p50", () -> stageLatencyMetrics.getLastInterval(stage).p50())
+                    .tag("stage", name)
+                    .baseUnit("us")
+                    .register(registry);
+            Gauge.builder("latency.stage.p99", () -> stageLatencyMetrics.getLastInterval(stage).p99())
+                    .tag("stage", name)
+                    .baseUnit("us")
+                    .register(registry);
+            Gauge.builder("latency.stage.max", () -> stageLatencyMetrics.getLastInterval(stage).max())
+                    .tag("stage", name)
+                    .baseUnit("us")
+                    .register(registry);
+        }
         //backpressureGate queue depth
-        Gauge.builder("backpressureGate.queue.depth", () -> backpressureGate.getQueue().size())
+        Gauge.builder("backpressureGate.queue.depth", () -> backpressureGate.getQueueDepth())
+                .register(registry);
+        //per traffic class: gate queue depth and e2e latency (window / last interval)
+        for (int c = 0; c < backpressureGate.getClasses(); c++) {
+            final int priority = c;
+            String cls = String.valueOf(c);
+            Gauge.builder("backpressureGate.queue.depth.class", () -> backpressureGate.getQueueDepth(priority))
+                    .tag("class", cls)
+                    .register(registry);
+            Gauge.builder("latency.class.p99", () -> latencyMetrics.getWindow(priority).p99())
+                    .tag("class", cls)
+                    .register(registry);
+            Gauge.builder("latency.class.avg", () -> latencyMetrics.getWindow(priority).mean())
+                    .tag("class", cls)
+                    .register(registry);
+            Gauge.builder("latency.class.interval.p99", () -> latencyMetrics.getLastInterval(priority).p99())
+                    .tag("class", cls)
+                    .register(registry);
+        }
+        //backpressureGate overflow on disk (overflow-policy=spill): waiting entries, total spilled
+        Gauge.builder("backpressureGate.spill.depth", () -> {
+                    long depth = 0;
+                    for (int c = 0; c < backpressureGate.getClasses(); c++) depth += backpressureGate.getSpillDepth(c);
+                    return depth;
+                })
+                .register(registry);
+        Gauge.builder("backpressureGate.spilled", backpressureGate::getSpilled)
+                .register(registry);
+        //backpressureGate tasks dropped by overflow policy
+        Gauge.builder("backpressureGate.shed", backpressureGate::getShed)
+                .register(registry);
+        //active smoother (credit gate or a rate-based pacer)
+        Gauge.builder("smoother.queue.depth", smoother::getQueueDepth)
+                .tag("strategy", smoother.getClass().getSimpleName())
+                .register(registry);
+        //distributed credit feedback
+        Gauge.builder("credits.remote.granted", remoteCreditIssuer::getGranted)
+                .register(registry);
+        Gauge.builder("credits.remote.reclaimed", remoteCreditIssuer::getReclaimed)
+                .register(registry);
+        Gauge.builder("credits.remote.liveProducers", remoteCreditIssuer::getLiveProducers)
+                .register(registry);
+        Gauge.builder("credits.remote.outstanding", remoteCreditIssuer::getOutstanding)
+                .register(registry);
+        Gauge.builder("credits.remote.received", remoteCreditClient::getReceived)
+                .register(registry);
+        //deadline shedding: expired in the gate (never sent) / at the consumer (dropped or dead-lettered)
+        Gauge.builder("backpressureGate.expired", backpressureGate::getExpired)
+                .register(registry);
+        Gauge.builder("consumer.expired", () -> consumerService.getExpired().sum())
+                .register(registry);
+        Gauge.builder("consumer.deadLettered", () -> consumerService.getDeadLettered().sum())
+                .register(registry);
+        //consumer group backlog from AdminClient (-1 = unavailable) and whether it holds the gate
+        Gauge.builder("consumer.lag", consumerLagMonitor::getLag)
+                .register(registry);
+        Gauge.builder("consumer.lag.maxPartition", consumerLagMonitor::getMaxPartitionLag)
+                .register(registry);
+        Gauge.builder("backpressureGate.withheld", () -> backpressureGate.isWithheld() ? 1 : 0)
                 .register(registry);
         //backpressureGate credits
         Gauge.builder("backpressureGate.credits", backpressureGate::getCredits)
                 .register(registry);
+        //backpressureGate credit budget (changes when adaptive limit is on)
+        Gauge.builder("backpressureGate.creditLimit", backpressureGate::getCreditLimit)
+                .register(registry);
+        //backpressureGate executor (tagged by mode to compare platform vs virtual)
+        String mode = backpressureGate.getExecutorMode().name().toLowerCase();
+        Gauge.builder("backpressureGate.workers.active", backpressureGate::getActiveWorkers)
+                .tag("mode", mode)
+                .register(registry);
+        Gauge.builder("backpressureGate.workers.peak", backpressureGate::getPeakWorkers)
+                .tag("mode", mode)
+                .register(registry);
+        Gauge.builder("backpressureGate.callerRuns", backpressureGate::getCallerRuns)
+                .tag("mode", mode)
+                .register(registry);
+        //producer sends (async results) and current tuning profile: 0 = steady, 1 = burst
+        Gauge.builder("producer.send.inFlight", producerSendMetrics::getInFlight)
+                .register(registry);
+        Gauge.builder("producer.send.failures", producerSendMetrics::getFailures)
+                .register(registry);
+        //send→ack p99 of the last interval: the SEND stage series, no separate histogram
+        Gauge.builder("producer.send.latency.p99", () -> stageLatencyMetrics.getLastInterval(StageLatencyMetrics.Stage.SEND).p99() / 1000.0)
+                .baseUnit("ms")
+                .register(registry);
+        Gauge.builder("producer.profile", () -> producerTuning.getProfile().ordinal())
+                .register(registry);
+        //reactive pipeline (pipeline.mode=reactive only)
+        reactiveConsumerService.ifAvailable(reactive -> {
+            Gauge.builder("pipeline.reactive.inFlight", reactive::getInFlight)
+                    .register(registry);
+            Gauge.builder("pipeline.reactive.demand", () -> reactive.getDemand().sum())
+                    .register(registry);
+            Gauge.builder("pipeline.reactive.expired", () -> reactive.getExpired().sum())
+                    .register(registry);
+            Gauge.builder("pipeline.reactive.failures", () -> reactive.getFailures().sum())
+                    .register(registry);
+        });
+        //db insert cost per row (µs, last interval), tagged by schema profile
+        Gauge.builder("db.insert.costPerRow.avg", () -> insertCostMetrics.getLastInterval().mean())
+                .tag("schema", schemaProfile)
+                .baseUnit("us")
+                .register(registry);
+        Gauge.builder("db.insert.costPerRow.p99", () -> insertCostMetrics.getLastInterval().p99())
+                .tag("schema", schemaProfile)
+                .baseUnit("us")
+                .register(registry);
+        Gauge.builder("db.insert.rows", insertCostMetrics::getRows)
+                .tag("schema", schemaProfile)
+                .register(registry);
+        //db group commit
+        Gauge.builder("db.batch.pending", batchingEventWriter::getPendingCount)
+                .register(registry);
+        Gauge.builder("db.batch.lastSize", batchingEventWriter::getLastBatchSize)
+                .register(registry);
+        //db micro-batch sink: adaptive target, batch size / DB time per interval, flush reasons
+        Gauge.builder("db.batch.targetSize", batchingEventWriter::getTargetBatchSize)
+                .register(registry);
+        Gauge.builder("db.batch.size.p50", () -> batchingEventWriter.getLastIntervalBatchSizes().p50())
+                .register(registry);
+        Gauge.builder("db.batch.size.p99", () -> batchingEventWriter.getLastIntervalBatchSizes().p99())
+                .register(registry);
+        Gauge.builder("db.batch.dbTime.p50", () -> batchingEventWriter.getLastIntervalBatchDbMicros().p50() / 1000.0)
+                .baseUnit("ms")
+                .register(registry);
+        Gauge.builder("db.batch.dbTime.p99", () -> batchingEventWriter.getLastIntervalBatchDbMicros().p99() / 1000.0)
+                .baseUnit("ms")
+                .register(registry);
+        for (BatchingEventWriter.FlushReason reason : BatchingEventWriter.FlushReason.values()) {
+            Gauge.builder("db.batch.flushes", () -> batchingEventWriter.getFlushCount(reason))
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(registry);
+        }
+        //db pinned-connection lanes: active count, per-row time, tx time vs same-size baseline (saturation),
+        //per-lane rows / tx time / inbox
+        if (laneEventWriter.isEnabled()) {
+            Gauge.builder("db.lanes.active", laneEventWriter::getActiveLanes)
+                    .register(registry);
+            Gauge.builder("db.lanes.rowTime", laneEventWriter::getLastRowMicros)
+                    .baseUnit("us")
+                    .register(registry);
+            Gauge.builder("db.lanes.txTimeRatio", laneEventWriter::getLastTxTimeRatio)
+                    .register(registry);
+            for (int i = 0; i < laneEventWriter.getLaneCount(); i++) {
+                final int lane = i;
+                String tag = String.valueOf(i);
+                Gauge.builder("db.lane.rows", () -> laneEventWriter.getRows(lane))
+                        .tag("lane", tag)
+                        .register(registry);
+                Gauge.builder("db.lane.pending", () -> laneEventWriter.getPendingCount(lane))
+                        .tag("lane", tag)
+                        .register(registry);
+                Gauge.builder("db.lane.txTime.p99", () -> laneEventWriter.getTxMicros(lane).getValueAtPercentile(99) / 1000.0)
+                        .tag("lane", tag)
+                        .baseUnit("ms")
+                        .register(registry);
+                Gauge.builder("db.lane.connected", () -> laneEventWriter.isConnected(lane) ? 1 : 0)
+                        .tag("lane", tag)
+                        .register(registry);
+            }
+        }
     }
 }
\ No newline at end of file
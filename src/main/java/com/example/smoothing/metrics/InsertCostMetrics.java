@@ -0,0 +1,69 @@
+package com.example.smoothing.metrics;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DB insert cost per row (µs) for the active schema profile: statement time / rows in the statement,
+ * so single inserts, JDBC batches and COPY are comparable. A statement is recorded once per row it wrote,
+ * so avg and percentiles are per row, not per statement. Writers record into {@link PerThreadRecorder};
+ * the interval snapshot is computed on the latency-metrics interval and read by the gauges.
+ * Summary since start is logged on shutdown.
+ */
+@Slf4j
+@Component
+public class InsertCostMetrics {
+    private static final long HIGHEST_TRACKABLE_MICROS = 60_000_000L;
+    private static final int DIGITS = 3;
+
+    private final PerThreadRecorder costPerRowMicros = new PerThreadRecorder(DIGITS);
+    private final LongAdder rows = new LongAdder();
+    // rotate() only
+    private final Histogram interval = new Histogram(HIGHEST_TRACKABLE_MICROS, DIGITS);
+    private final Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, DIGITS);
+
+    /** Last completed interval. */
+    @Getter
+    private volatile LatencyMetrics.Snapshot lastInterval = LatencyMetrics.Snapshot.EMPTY;
+
+    @Value("${db.schema-profile}")
+    private String schemaProfile;
+
+    public void record(long startNanos, int rowCount) {
+        if (rowCount <= 0) return;
+        long perRow = (System.nanoTime() - startNanos) / 1_000 / rowCount;
+        costPerRowMicros.recordValueWithCount(Math.max(0, Math.min(perRow, HIGHEST_TRACKABLE_MICROS)), rowCount);
+        rows.add(rowCount);
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Scheduled(fixedRateString = "${metrics.latency.interval-ms}")
+    public synchronized void rotate() {
+        interval.reset();
+        costPerRowMicros.addIntervalTo(interval);
+        total.add(interval);
+        lastInterval = LatencyMetrics.Snapshot.of(interval);
+    }
+
+    @PreDestroy
+    void report() {
+        if (getRows() == 0) return;
+        LatencyMetrics.Snapshot s;
+        synchronized (this) {
+            rotate(); // the unfinished interval too
+            s = LatencyMetrics.Snapshot.of(total);
+        }
+        log.info("Insert cost, schema profile '{}': rows={}, per row avg={}µs p50={}µs p99={}µs",
+                schemaProfile, getRows(), String.format("%.1f", s.mean()), s.p50(), s.p99());
+    }
+}
@@ -1,19 +1,164 @@
 package com.example.smoothing.metrics;
 
-import org.HdrHistogram.ConcurrentHistogram;
 import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
+
+/**
+ * E2E latency (ms), overall and per traffic class. Every consumer thread records into its own
+ * single-writer histogram ({@link PerThreadRecorder}); once per interval the threads are merged into the
+ * interval histogram, which is rolled into a sliding window of the last window-seconds.
+ * Percentiles are computed once per interval and cached, so gauges read plain fields.
+ * A separate downstream series covers gate dispatch → consumer done only (no time waiting in the gate):
+ * that is what a credit is held for, so the adaptive credit limit is driven by it.
+ */
 @Component
 public class LatencyMetrics {
-    private final static Histogram latencyHist = new ConcurrentHistogram(5_000_000L, 3);
+    private static final long HIGHEST_TRACKABLE_MS = 5_000_000L;
+    private static final int DIGITS = 3;
+
+    private final Series all = new Series();
+    private final Series[] byClass;
+    private final Series downstream = new Series();
+    // overall interval histograms are also added here between startCapture() and stopCapture()
+    private volatile Histogram capture;
+
+    private final int windowIntervals;
+
+    /** Percentiles of one histogram, computed once. */
+    public record Snapshot(long count, double mean, long min, long max, long p50, long p95, long p99) {
+        public static final Snapshot EMPTY = new Snapshot(0, 0.0, 0, 0, 0, 0, 0);
+
+        public static Snapshot of(Histogram h) {
+            if (h.getTotalCount() == 0) return EMPTY;
+            return new Snapshot(h.getTotalCount(), h.getMean(), h.getMinValue(), h.getMaxValue(),
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(95), h.getValueAtPercentile(99));
+        }
+    }
+
+    /** Per-thread recorders + sliding window for one latency series. */
+    private static final class Series {
+        private final PerThreadRecorder recorder = new PerThreadRecorder(DIGITS);
+        // Below: touched only by the single scheduled rotate() thread (snapshots are published via volatile)
+        private final ArrayDeque<Histogram> window = new ArrayDeque<>();
+        private final Histogram windowHist = new Histogram(HIGHEST_TRACKABLE_MS, DIGITS);
+        private final Histogram totalHist = new Histogram(HIGHEST_TRACKABLE_MS, DIGITS);
+        private Histogram recycled;
+
+        private volatile Snapshot lastInterval = Snapshot.EMPTY;
+        private volatile Snapshot lastWindow = Snapshot.EMPTY;
+        private volatile Snapshot total = Snapshot.EMPTY;
+
+        void record(long latencyMs) {
+            recorder.recordValue(Math.max(0, Math.min(latencyMs, HIGHEST_TRACKABLE_MS)));
+        }
+
+        /** Returns the interval histogram just rolled in (valid until the next rotate). */
+        Histogram rotate(int windowIntervals) {
+            Histogram interval = recycled != null ? recycled : new Histogram(HIGHEST_TRACKABLE_MS, DIGITS);
+            recycled = null;
+            interval.reset();
+            recorder.addIntervalTo(interval);
+            window.addLast(interval);
+            windowHist.add(interval);
+            totalHist.add(interval);
+            if (window.size() > windowIntervals) {
+                Histogram evicted = window.removeFirst();
+                windowHist.subtract(evicted);
+                recycled = evicted;
+            }
+            lastInterval = Snapshot.of(interval);
+            lastWindow = Snapshot.of(windowHist);
+            total = Snapshot.of(totalHist);
+            return interval;
+        }
+    }
+
+    public LatencyMetrics(
+            @Value("${metrics.latency.interval-ms}") long intervalMs,
+            @Value("${metrics.latency.window-seconds}") long windowSeconds,
+            @Value("${backpressure.class-weights}") int[] classWeights
+    ) {
+        if (intervalMs <= 0 || windowSeconds * 1000 < intervalMs)
+            throw new IllegalArgumentException("require 0 < interval-ms <= window-seconds * 1000");
+        this.windowIntervals = (int) (windowSeconds * 1000 / intervalMs);
+        Series[] series = new Series[classWeights.length];
+        for (int c = 0; c < series.length; c++) series[c] = new Series();
+        byClass = series;
+    }
+
+    public void record(long latencyMs) {
+        all.record(latencyMs);
+    }
+
+    /** Records into the overall series and into the series of the message's traffic class. */
+    public void record(long latencyMs, int priority) {
+        all.record(latencyMs);
+        if (priority >= 0 && priority < byClass.length) byClass[priority].record(latencyMs);
+    }
+
+    /** Gate dispatch (Message.sentAtMs, wall clock) → now. sentAtMs 0 (not sent through the gate path) is skipped. */
+    public void recordDownstream(long sentAtMs) {
+        if (sentAtMs > 0) downstream.record(System.currentTimeMillis() - sentAtMs);
+    }
+
+    @Scheduled(fixedRateString = "${metrics.latency.interval-ms}")
+    public void rotate() {
+        Histogram interval = all.rotate(windowIntervals);
+        Histogram c = capture;
+        if (c != null) {
+            synchronized (c) {
+                c.add(interval);
+            }
+        }
+        for (Series s : byClass) s.rotate(windowIntervals);
+        downstream.rotate(windowIntervals);
+    }
+
+    /** Starts collecting the overall series from the next interval on (measurement window of an experiment). */
+    public void startCapture() {
+        capture = new Histogram(HIGHEST_TRACKABLE_MS, DIGITS);
+    }
+
+    /** Stops collecting and returns everything captured since {@link #startCapture()}. */
+    public Histogram stopCapture() {
+        Histogram c = capture;
+        capture = null;
+        if (c == null) return new Histogram(HIGHEST_TRACKABLE_MS, DIGITS);
+        synchronized (c) {
+            return c.copy();
+        }
+    }
+
+    /** Last completed interval (e.g. 1 s) — follows HIGH/LOW phases. */
+    public Snapshot getLastInterval() {
+        return all.lastInterval;
+    }
+
+    /** Last completed interval of the downstream series (dispatch → done). */
+    public Snapshot getDownstreamLastInterval() {
+        return downstream.lastInterval;
+    }
+
+    /** Sliding window of the last window-seconds. */
+    public Snapshot getWindow() {
+        return all.lastWindow;
+    }
 
-    public static Histogram getHistogram() {
-        return latencyHist;
+    /** Since process start. */
+    public Snapshot getTotal() {
+        return all.total;
     }
 
-    public static Histogram getHistogramCopy() {
-        return latencyHist.copy();
+    /** Sliding window of one traffic class. */
+    public Snapshot getWindow(int priority) {
+        return byClass[priority].lastWindow;
     }
 
+    public Snapshot getLastInterval(int priority) {
+        return byClass[priority].lastInterval;
+    }
 }
@@ -0,0 +1,97 @@
+package com.example.smoothing.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.HdrHistogram.ValueRecorder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Histogram recorder with one {@link SingleWriterRecorder} per writer thread: a record is an uncontended
+ * write into the caller's own (auto-resizing) histogram, no CAS on shared state. The reader merges all
+ * threads into one interval histogram; slots of dead threads get a last drain and are dropped.
+ * Virtual threads (one per task) share a concurrent {@link Recorder} instead of getting a slot each.
+ */
+final class PerThreadRecorder {
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private final int digits;
+    private final Recorder shared;
+    private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ValueRecorder> local = ThreadLocal.withInitial(this::newSlot);
+    // reader only
+    private Histogram sharedRecycled;
+
+    private static final class Slot {
+        final WeakReference<Thread> owner;
+        final SingleWriterRecorder recorder;
+        Histogram recycled; // reader only
+
+        Slot(Thread owner, int digits) {
+            this.owner = new WeakReference<>(owner);
+            this.recorder = new SingleWriterRecorder(digits);
+        }
+    }
+
+    PerThreadRecorder(int digits) {
+        this.digits = digits;
+        this.shared = new Recorder(digits);
+    }
+
+    /** Any thread; the value must already be clamped by the caller. */
+    void recordValue(long value) {
+        local.get().recordValue(value);
+    }
+
+    /** As {@link #recordValue(long)}, {@code count} times. */
+    void recordValueWithCount(long value, long count) {
+        local.get().recordValueWithCount(value, count);
+    }
+
+    /** Reader only (one thread): adds everything recorded since the previous call to {@code target}. */
+    void addIntervalTo(Histogram target) {
+        sharedRecycled = shared.getIntervalHistogram(sharedRecycled);
+        target.add(sharedRecycled);
+        for (Iterator<Slot> it = slots.iterator(); it.hasNext(); ) {
+            Slot slot = it.next();
+            Thread owner = slot.owner.get();
+            boolean dead = owner == null || !owner.isAlive(); // check first: no writes after the last drain
+            slot.recycled = slot.recorder.getIntervalHistogram(slot.recycled);
+            target.add(slot.recycled);
+            if (dead) it.remove();
+        }
+    }
+
+    private ValueRecorder newSlot() {
+        Thread t = Thread.currentThread();
+        if (isVirtual(t)) return shared;
+        Slot slot = new Slot(t, digits);
+        slots.add(slot);
+        return slot.recorder;
+    }
+
+    private static boolean isVirtual(Thread t) {
+        if (IS_VIRTUAL == null) return false;
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(t);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /** Thread.isVirtual() exists from JDK 21; the build targets 17. */
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.smoothing.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Async kafkaTemplate.send() results: in-flight sends and failures.
+ * Send→ack latency is the SEND stage of {@link StageLatencyMetrics}.
+ */
+@Component
+public class ProducerSendMetrics {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder failures = new LongAdder();
+
+    /** Call right before send(); returns the start timestamp (System.nanoTime()) for the SEND stage. */
+    public long onSend() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void onComplete(Throwable error) {
+        inFlight.decrementAndGet();
+        if (error != null) failures.increment();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+}
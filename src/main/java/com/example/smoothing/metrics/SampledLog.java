@@ -0,0 +1,35 @@
+package com.example.smoothing.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limit for hot-path log lines: at most one caller per interval gets to log, everyone else only
+ * bumps a striped counter. Usage:
+ * <pre>
+ * long skipped = sampledLog.tryAcquire();
+ * if (skipped >= 0) log.info("... ({} similar suppressed)", ..., skipped);
+ * </pre>
+ */
+public final class SampledLog {
+    private final long intervalNanos;
+    private final AtomicLong nextNanos = new AtomicLong(System.nanoTime());
+    private final LongAdder suppressed = new LongAdder();
+
+    /** intervalMs <= 0 logs every call. */
+    public SampledLog(long intervalMs) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMs));
+    }
+
+    /** -1 if this call must not log, otherwise the number of calls suppressed since the last logged one. */
+    public long tryAcquire() {
+        long now = System.nanoTime();
+        long next = nextNanos.get();
+        if (now - next < 0 || !nextNanos.compareAndSet(next, now + intervalNanos)) {
+            suppressed.increment();
+            return -1;
+        }
+        return suppressed.sumThenReset();
+    }
+}
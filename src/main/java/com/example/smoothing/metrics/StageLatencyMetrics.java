@@ -0,0 +1,65 @@
+package com.example.smoothing.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Where the e2e latency goes, per pipeline stage (µs), as interval histograms swapped every metrics.latency.interval-ms:
+ * <pre>
+ * generated ─GENERATOR→ gate-enqueued ─GATE→ gate-dispatched ─SEND→ kafka-acked
+ *                                            gate-dispatched ─BROKER→ consumed ─DB→ db-done
+ * </pre>
+ * In-process stages use System.nanoTime(). BROKER crosses processes, so it is wall clock
+ * (Message.sentAtMs → consume time, ms resolution) and overlaps SEND (it includes the ack wait).
+ * Recording is per thread ({@link PerThreadRecorder}); 2 significant digits keep a slot small on the
+ * ~300 gate workers that each record GATE.
+ */
+@Component
+public class StageLatencyMetrics {
+    private static final long HIGHEST_TRACKABLE_MICROS = 3_600_000_000L;
+
+    public enum Stage { GENERATOR, GATE, SEND, BROKER, DB }
+
+    private static final int DIGITS = 2;
+
+    private final PerThreadRecorder[] recorders = new PerThreadRecorder[Stage.values().length];
+    // rotate() only
+    private final Histogram interval = new Histogram(HIGHEST_TRACKABLE_MICROS, DIGITS);
+    private final LatencyMetrics.Snapshot[] lastInterval = new LatencyMetrics.Snapshot[Stage.values().length];
+
+    public StageLatencyMetrics() {
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new PerThreadRecorder(DIGITS);
+            lastInterval[i] = LatencyMetrics.Snapshot.EMPTY;
+        }
+    }
+
+    public void recordNanos(Stage stage, long nanos) {
+        recorders[stage.ordinal()].recordValue(Math.max(0, Math.min(nanos / 1_000, HIGHEST_TRACKABLE_MICROS)));
+    }
+
+    /** Stage that started at {@code startNanos} (System.nanoTime()) and ends now. */
+    public void recordSince(Stage stage, long startNanos) {
+        recordNanos(stage, System.nanoTime() - startNanos);
+    }
+
+    /** Gate dispatch (Message.sentAtMs, producer wall clock) → consumed (now). */
+    public void recordBrokerTransit(long sentAtMs) {
+        if (sentAtMs > 0) recordNanos(Stage.BROKER, (System.currentTimeMillis() - sentAtMs) * 1_000_000);
+    }
+
+    @Scheduled(fixedRateString = "${metrics.latency.interval-ms}")
+    public void rotate() {
+        for (int i = 0; i < recorders.length; i++) {
+            interval.reset();
+            recorders[i].addIntervalTo(interval);
+            lastInterval[i] = LatencyMetrics.Snapshot.of(interval);
+        }
+    }
+
+    /** Last completed interval of one stage, values in µs. */
+    public LatencyMetrics.Snapshot getLastInterval(Stage stage) {
+        return lastInterval[stage.ordinal()];
+    }
+}
@@ -2,45 +2,60 @@ package com.example.smoothing.metrics;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Handled (consumer) and ingress (generator) rates. One striped counter per event; the per-second rate is
+ * the delta of the running total, so there is no second counter to reset. Logged at most once per log-interval.
+ */
 @Slf4j
 @Component
 public class ThroughputMetrics {
     private final int fixedRate = 1; //Throughput window in seconds,
+    private final LongAdder throughputTotalCount = new LongAdder();
+    private final LongAdder ingressTotalCount = new LongAdder();
     @Getter
-    private final static LongAdder throughputTotalCount = new LongAdder();
+    private volatile double currentThroughput;
     @Getter
-    private final static LongAdder throughputWindowCount = new LongAdder();
-    @Getter
-    private static volatile double currentThroughput;
-    private static final LongAdder ingressWindowCount = new LongAdder();
-    @Getter
-    private static volatile double currentIngressRate;
+    private volatile double currentIngressRate;
+    // recordAndReset() only
+    private long lastThroughputTotal;
+    private long lastIngressTotal;
+    private final SampledLog summaryLog;
+
+    public ThroughputMetrics(@Value("${metrics.log-interval-seconds}") long logIntervalSeconds) {
+        this.summaryLog = new SampledLog(logIntervalSeconds * 1000);
+    }
 
-    public static void incrementThroughputCount() {
+    public void incrementThroughputCount() {
         throughputTotalCount.increment();
-        throughputWindowCount.increment();
     }
 
-    public static void incrementIngressRateCount() {
-        ingressWindowCount.increment();
+    public void incrementIngressRateCount() {
+        ingressTotalCount.increment();
     }
 
+    public long getThroughputTotalCount() {
+        return throughputTotalCount.sum();
+    }
 
     @Scheduled(fixedRate = fixedRate * 1000)
     public void recordAndReset() {
-        double throughput = (double) throughputWindowCount.sum() / fixedRate;
-        currentThroughput = throughput;
-        throughputWindowCount.reset();
-        log.info("Throughput recorded for last {} s. Throughput={}.", fixedRate, throughput);
-
-        double ingressRate = (double) ingressWindowCount.sum() / fixedRate;
-        currentIngressRate = ingressRate;
-        ingressWindowCount.reset();
-        log.info("IngressRate recorded for last {} s. IngressRate={}.", fixedRate, ingressRate);
+        long handled = throughputTotalCount.sum();
+        currentThroughput = (double) (handled - lastThroughputTotal) / fixedRate;
+        lastThroughputTotal = handled;
+
+        long ingress = ingressTotalCount.sum();
+        currentIngressRate = (double) (ingress - lastIngressTotal) / fixedRate;
+        lastIngressTotal = ingress;
+
+        if (summaryLog.tryAcquire() >= 0) {
+            log.info("Last {} s: throughput={}, ingressRate={}, handled total={}.",
+                    fixedRate, currentThroughput, currentIngressRate, handled);
+        }
     }
 }
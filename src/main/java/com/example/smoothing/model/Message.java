@@ -2,5 +2,16 @@ package com.example.smoothing.model;
 
 import java.io.Serializable;
 
-public record Message(Long startTimeMs, String payload) implements Serializable {
+/**
+ * @param priority  traffic class, 0 = interactive (most urgent), higher = bulk
+ * @param sentAtMs  wall clock when the gate dispatched it to Kafka (0 = unknown); consumer measures broker transit from it
+ */
+public record Message(Long startTimeMs, String payload, int priority, long sentAtMs) implements Serializable {
+    public Message(Long startTimeMs, String payload) {
+        this(startTimeMs, payload, 0, 0L);
+    }
+
+    public Message(Long startTimeMs, String payload, int priority) {
+        this(startTimeMs, payload, priority, 0L);
+    }
 }
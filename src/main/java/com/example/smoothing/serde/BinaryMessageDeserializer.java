@@ -0,0 +1,55 @@
+package com.example.smoothing.serde;
+
+import com.example.smoothing.model.Message;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the {@link BinaryMessageSerializer} layout. Records that start with '{' were written by the
+ * JSON serializer and go to the JSON fallback, so a topic can be switched between formats without being recreated.
+ * Anything else that does not carry the current version byte (unversioned records of older builds, truncated
+ * records) fails with a {@link SerializationException}; KafkaConfig wraps this deserializer in an
+ * ErrorHandlingDeserializer, so such a record is skipped instead of failing every poll of its partition.
+ */
+public class BinaryMessageDeserializer implements Deserializer<Message> {
+    private final JsonDeserializer<Message> jsonFallback;
+
+    public BinaryMessageDeserializer(JsonDeserializer<Message> jsonFallback) {
+        this.jsonFallback = jsonFallback;
+    }
+
+    @Override
+    public Message deserialize(String topic, byte[] data) {
+        if (data == null) return null;
+        if (data.length > 0 && data[0] == '{') {
+            return jsonFallback.deserialize(topic, data);
+        }
+        if (data.length < BinaryMessageSerializer.HEADER_BYTES) {
+            throw new SerializationException("Binary message too short: " + data.length + " bytes");
+        }
+        if (data[0] != BinaryMessageSerializer.VERSION) {
+            throw new SerializationException("Unsupported binary message version " + data[0]
+                    + " (expected " + BinaryMessageSerializer.VERSION + ")");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data, 1, data.length - 1);
+        long startTimeMs = buf.getLong();
+        int priority = buf.get();
+        long sentAtMs = buf.getLong();
+        int len = buf.getInt();
+        if (len < -1 || len > buf.remaining()) {
+            throw new SerializationException("Binary message payload length " + len + " out of bounds, "
+                    + buf.remaining() + " bytes left");
+        }
+        String payload = (len < 0) ? null : new String(data, buf.position(), len, StandardCharsets.UTF_8);
+        return new Message(startTimeMs, payload, priority, sentAtMs);
+    }
+
+    @Override
+    public void close() {
+        jsonFallback.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.smoothing.serde;
+
+import com.example.smoothing.model.Message;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout: [version: 1 byte][startTimeMs: 8 bytes][priority: 1 byte][sentAtMs: 8 bytes][payload length: 4 bytes, -1 = null][payload: UTF-8].
+ * Bump {@link #VERSION} whenever the layout changes; it must stay distinct from 0x00 (unversioned records of older
+ * builds start with the high byte of an epoch-ms timestamp) and from '{' (JSON records).
+ * The payload is encoded straight into a per-thread reused ByteBuffer; the only allocation is the
+ * exact-size byte[] Kafka's Serializer contract requires.
+ */
+public class BinaryMessageSerializer implements Serializer<Message> {
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = Byte.BYTES + Long.BYTES + Byte.BYTES + Long.BYTES + Integer.BYTES;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+
+    @Override
+    public byte[] serialize(String topic, Message msg) {
+        if (msg == null) return null;
+        String payload = msg.payload();
+        // worst case 3 bytes per UTF-16 char (surrogate pairs: 4 bytes per 2 chars)
+        int maxBytes = HEADER_BYTES + (payload == null ? 0 : payload.length() * 3);
+        ByteBuffer buf = BUFFER.get();
+        if (buf.capacity() < maxBytes) {
+            buf = ByteBuffer.allocate(Math.max(maxBytes, buf.capacity() * 2));
+            BUFFER.set(buf);
+        }
+        buf.clear();
+        buf.put(VERSION);
+        buf.putLong(msg.startTimeMs() != null ? msg.startTimeMs() : 0L);
+        buf.put((byte) msg.priority());
+        buf.putLong(msg.sentAtMs());
+        if (payload == null) {
+            buf.putInt(-1);
+        } else {
+            int lenPos = buf.position();
+            buf.position(lenPos + Integer.BYTES);
+            encodeUtf8(payload, buf);
+            buf.putInt(lenPos, buf.position() - lenPos - Integer.BYTES);
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    private static void encodeUtf8(String s, ByteBuffer buf) {
+        byte[] out = buf.array();
+        int p = buf.position();
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out[p++] = (byte) c;
+            } else if (c < 0x800) {
+                out[p++] = (byte) (0xC0 | (c >> 6));
+                out[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out[p++] = (byte) (0xF0 | (cp >> 18));
+                out[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                out[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                out[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[p++] = '?'; // lone surrogate, same replacement String.getBytes(UTF_8) uses
+            } else {
+                out[p++] = (byte) (0xE0 | (c >> 12));
+                out[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buf.position(p);
+    }
+}
@@ -1,67 +1,232 @@
 package com.example.smoothing.service;
 
+import com.example.smoothing.db.BatchingEventWriter;
 import com.example.smoothing.db.EventDao;
+import com.example.smoothing.db.LaneEventWriter;
 import com.example.smoothing.metrics.LatencyMetrics;
+import com.example.smoothing.metrics.SampledLog;
+import com.example.smoothing.metrics.StageLatencyMetrics;
 import com.example.smoothing.metrics.ThroughputMetrics;
 import com.example.smoothing.model.Message;
-import com.example.smoothing.smoothing.BackpressureGate;
+import com.example.smoothing.smoothing.Smoother;
+import com.example.smoothing.smoothing.remote.RemoteCreditIssuer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ConsumerService {
-    private final BackpressureGate backpressureGate;
+    private final Smoother smoother;
+    private final RemoteCreditIssuer remoteCreditIssuer;
     private final EventDao eventDao;
+    private final BatchingEventWriter batchingEventWriter;
+    private final LaneEventWriter laneEventWriter;
+    private final LatencyMetrics latencyMetrics;
+    private final ThroughputMetrics throughputMetrics;
+    private final StageLatencyMetrics stageLatencyMetrics;
+    // mutable: ExperimentRunner switches them between configurations
+    @Setter
     @Value(value = "${backpressure.enabled}")
-    private Boolean backpressureEnabled;
+    private volatile Boolean backpressureEnabled;
+    @Setter
     @Value(value = "${db-enabled}")
-    private Boolean dbEnabled;
+    private volatile Boolean dbEnabled;
+    @Value(value = "${consumer.batch-enabled}")
+    private Boolean batchEnabled;
+    @Value(value = "${consumer.workers}")
+    private int workers;
+    @Value(value = "${spring.datasource.hikari.maximumPoolSize}")
+    private int dbPoolSize;
+    @Value(value = "${deadline.enabled}")
+    private Boolean deadlineEnabled;
+    @Value(value = "${deadline.ms}")
+    private long deadlineMs;
+    @Value(value = "${deadline.action}")
+    private String deadlineAction; // drop | dead-letter
+    @Value(value = "${deadline.dead-letter-topic}")
+    private String deadLetterTopic;
+    @Value(value = "${metrics.log-interval-seconds}")
+    private long logIntervalSeconds;
+    private final KafkaTemplate<String, Message> kafkaTemplate;
+    // Сообщения, пришедшие после дедлайна: не обрабатываются и не попадают в e2e latency
+    @Getter
+    private final LongAdder expired = new LongAdder();
+    @Getter
+    private final LongAdder deadLettered = new LongAdder();
+    // Fan-out pool for batch mode; sized to DB connections / cores
+    private ExecutorService batchWorkers;
+    // Per-message lines: at most one per metrics.log-interval-seconds
+    private SampledLog workLog;
+    private SampledLog errorLog;
 
-    @KafkaListener(topics = {"${spring.kafka.topic}"}, concurrency = "1")
+    @PostConstruct
+    void init() {
+        workLog = new SampledLog(logIntervalSeconds * 1000);
+        errorLog = new SampledLog(logIntervalSeconds * 1000);
+        if (batchEnabled) {
+            AtomicInteger n = new AtomicInteger();
+            batchWorkers = Executors.newFixedThreadPool(workers, r -> {
+                Thread t = new Thread(r, "consumer-worker-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            log.info("Batch consumer mode: {} workers", workers);
+            if (workers > dbPoolSize) {
+                log.warn("consumer.workers={} > Hikari pool size {}: with db-enabled (no batch/lanes sink) workers "
+                        + "will time out acquiring connections", workers, dbPoolSize);
+            }
+        }
+    }
+
+    @KafkaListener(topics = {"${spring.kafka.topic}"}, concurrency = "${consumer.concurrency}",
+            autoStartup = "#{'${pipeline.mode}' == 'threaded' && !${consumer.batch-enabled}}")
     public void handle(Message msg) {
+        // async sinks (db.batch / db.lanes): the offset is committed when this returns, so wait for the row.
+        // No timeout/redelivery: the write could not be cancelled and would land twice, returning two credits.
+        // The sink futures always complete (failures are logged in process), stale work is shed by the deadline.
+        process(msg).join();
+    }
+
+    /** Processes the whole poll in parallel; returns (and lets the container commit offsets) only when all are done. */
+    @KafkaListener(topics = {"${spring.kafka.topic}"}, concurrency = "${consumer.concurrency}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${pipeline.mode}' == 'threaded' && ${consumer.batch-enabled}}")
+    public void handleBatch(List<Message> batch) {
+        CompletableFuture<?>[] done = new CompletableFuture<?>[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Message msg = batch.get(i);
+            done[i] = CompletableFuture.supplyAsync(() -> process(msg), batchWorkers).thenCompose(f -> f);
+        }
+        CompletableFuture.allOf(done).join();
+    }
+
+    private CompletableFuture<Void> process(Message msg) {
+        if (msg == null) { // undecodable record (ErrorHandlingDeserializer), batch mode only
+            onUndecodable();
+            return CompletableFuture.completedFuture(null);
+        }
+        long consumedNanos = System.nanoTime();
+        stageLatencyMetrics.recordBrokerTransit(msg.sentAtMs());
+        if (deadlineEnabled && System.currentTimeMillis() - msg.startTimeMs() > deadlineMs) {
+            shedExpired(msg);
+            grantBackpressureCredit();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (dbEnabled && (laneEventWriter.isEnabled() || batchingEventWriter.isEnabled())) {
+            return saveToDBBatchedAndRecordMetrics(msg, consumedNanos); // credit is granted on batch completion
+        }
         try {
             if (dbEnabled) {
-                saveToDBAndRecordMetrics(msg);
+                saveToDBAndRecordMetrics(msg, consumedNanos);
             }else {
-                emulateWorkAndRecordMetrics(msg);
+                emulateWorkAndRecordMetrics(msg, consumedNanos);
             }
         } catch (Exception e) {
-            log.error("Error in emulateWorkAndRecordMetrics", e);
+            long skipped = errorLog.tryAcquire();
+            if (skipped >= 0) log.error("Error in emulateWorkAndRecordMetrics ({} similar suppressed)", skipped, e);
         } finally {
             grantBackpressureCredit();
         }
+        return CompletableFuture.completedFuture(null);
     }
 
-    private void saveToDBAndRecordMetrics(Message msg) {
-        //double dbMs = eventDao.insert(msg.startTimeMs(), msg.payload()); //Insert takes about 30 ms. Because of delay_30ms in schema.sql
-        eventDao.insert(msg.startTimeMs(), msg.payload()); //Insert takes about 30 ms. Because of delay_30ms in schema.sql
+    private void saveToDBAndRecordMetrics(Message msg, long consumedNanos) {
+        //double dbMs = eventDao.insert(msg.startTimeMs(), msg.payload()); //Insert takes about 30 ms. Because of delay_30ms in schema-classic.sql
+        eventDao.insert(msg.startTimeMs(), msg.payload()); //Insert takes about 30 ms. Because of delay_30ms in schema-classic.sql
         eventDao.insert(msg.startTimeMs(), msg.payload());
+        stageLatencyMetrics.recordSince(StageLatencyMetrics.Stage.DB, consumedNanos);
         //log.info("Insert into DB length= {} ms", dbMs);
         // end-to-end latency
         long e2eMs = System.currentTimeMillis() - msg.startTimeMs();
-        LatencyMetrics.getHistogram().recordValue(e2eMs);
-        ThroughputMetrics.incrementThroughputCount();
+        latencyMetrics.record(e2eMs, msg.priority());
+        latencyMetrics.recordDownstream(msg.sentAtMs());
+        throughputMetrics.incrementThroughputCount();
         //log.info("Latency recorded, REAL DB case: endToEnd latency={} ms, dbWrite={} ms", e2eMs, dbMs);
     }
 
-    private void emulateWorkAndRecordMetrics(Message msg) throws InterruptedException {
+    private CompletableFuture<Void> saveToDBBatchedAndRecordMetrics(Message msg, long consumedNanos) {
+        return CompletableFuture.allOf(insertAsync(msg), insertAsync(msg)).handle((ignored, e) -> {
+            if (e != null) {
+                long skipped = errorLog.tryAcquire();
+                if (skipped >= 0) log.error("Error in saveToDBBatchedAndRecordMetrics ({} similar suppressed)", skipped, e);
+            } else {
+                stageLatencyMetrics.recordSince(StageLatencyMetrics.Stage.DB, consumedNanos);
+                long e2eMs = System.currentTimeMillis() - msg.startTimeMs();
+                latencyMetrics.record(e2eMs, msg.priority());
+                latencyMetrics.recordDownstream(msg.sentAtMs());
+                throughputMetrics.incrementThroughputCount();
+            }
+            grantBackpressureCredit();
+            return null;
+        });
+    }
+
+    /** Pinned-connection lanes (round-robin: rows carry no ordering key) when enabled, otherwise the group-commit writer. */
+    private CompletableFuture<Double> insertAsync(Message msg) {
+        return laneEventWriter.isEnabled()
+                ? laneEventWriter.insert(msg.startTimeMs(), msg.payload())
+                : batchingEventWriter.insert(msg.startTimeMs(), msg.payload());
+    }
+
+    private void emulateWorkAndRecordMetrics(Message msg, long consumedNanos) throws InterruptedException {
         Thread.sleep(30);
+        stageLatencyMetrics.recordSince(StageLatencyMetrics.Stage.DB, consumedNanos); // mock DB work
         // end-to-end latency
         var e2eMs = System.currentTimeMillis() - msg.startTimeMs();
-        LatencyMetrics.getHistogram().recordValue(e2eMs);
-        ThroughputMetrics.incrementThroughputCount();
-        log.info("Latency recorded, MOCK DB case: endToEnd latency={} ms", e2eMs);
+        latencyMetrics.record(e2eMs, msg.priority());
+        latencyMetrics.recordDownstream(msg.sentAtMs());
+        throughputMetrics.incrementThroughputCount();
+        long skipped = workLog.tryAcquire();
+        if (skipped >= 0) log.info("Latency recorded, MOCK DB case: endToEnd latency={} ms ({} more since last line)", e2eMs, skipped);
+    }
+
+    private void shedExpired(Message msg) {
+        expired.increment();
+        if ("dead-letter".equalsIgnoreCase(deadlineAction)) {
+            kafkaTemplate.send(deadLetterTopic, msg).whenComplete((r, e) -> {
+                if (e != null) log.error("Dead-letter send failed", e);
+                else deadLettered.increment();
+            });
+        }
+    }
+
+    /**
+     * An undecodable record is skipped, but the producer spent a credit on it: return it.
+     * Record mode: such records never reach {@link #handle}, the container's recoverer calls this (see KafkaConfig).
+     */
+    public void onUndecodable() {
+        long skipped = errorLog.tryAcquire();
+        if (skipped >= 0) log.error("Skipped an undecodable record ({} similar suppressed)", skipped);
+        grantBackpressureCredit();
     }
 
     private void grantBackpressureCredit() {
-        if (backpressureEnabled) {
-            backpressureGate.grant(1);
+        if (remoteCreditIssuer.isEnabled()) {
+            remoteCreditIssuer.onCompleted(1);  // producers may run elsewhere: grant via the control topic
+        } else if (backpressureEnabled) {
+            smoother.onCompleted(1);
         }
     }
 
-}
\ No newline at end of file
+    @PreDestroy
+    void shutdown() {
+        if (batchWorkers != null) batchWorkers.shutdown();
+    }
+
+}
@@ -1,11 +1,23 @@
 package com.example.smoothing.service;
 
+import com.example.smoothing.generator.RateFunction;
 import com.example.smoothing.generator.SquareWaveRate;
 import com.example.smoothing.generator.StochasticLoadGenerator;
 import com.example.smoothing.generator.TimedTask;
 import com.example.smoothing.generator.batchsize.GeometricBatchSize;
+import com.example.smoothing.generator.payload.PayloadFactory;
+import com.example.smoothing.generator.rate.DiurnalRate;
+import com.example.smoothing.generator.rate.HawkesRate;
+import com.example.smoothing.generator.rate.PiecewiseLinearRate;
+import com.example.smoothing.generator.rate.RampRate;
+import com.example.smoothing.generator.rate.SineRate;
+import com.example.smoothing.generator.rate.TraceReplayRate;
+import com.example.smoothing.metrics.ProducerSendMetrics;
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import com.example.smoothing.metrics.ThroughputMetrics;
 import com.example.smoothing.model.Message;
 import com.example.smoothing.smoothing.BackpressureGate;
+import com.example.smoothing.smoothing.Smoother;
 import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -15,12 +27,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.event.EventListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.Random;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Slf4j
 @Service
@@ -32,43 +45,140 @@ public class ProducerService {
     private int DURATION_MINUTES;
     @Value(value = "${load-generator.high-rate}")
     private int HIGH_RATE;
+    @Value(value = "${load-generator.rate.shape}")
+    private String rateShape;
+    @Value(value = "${load-generator.rate.low}")
+    private double lowRate;
+    @Value(value = "${load-generator.rate.period-seconds}")
+    private long ratePeriodSeconds;
+    @Value(value = "${load-generator.rate.diurnal.peak-hour}")
+    private double diurnalPeakHour;
+    @Value(value = "${load-generator.rate.diurnal.sharpness}")
+    private double diurnalSharpness;
+    @Value(value = "${load-generator.rate.piecewise.points}")
+    private String piecewisePoints;
+    @Value(value = "${load-generator.rate.hawkes.branching}")
+    private double hawkesBranching;
+    @Value(value = "${load-generator.rate.hawkes.decay-ms}")
+    private long hawkesDecayMs;
+    @Value(value = "${load-generator.rate.trace.file}")
+    private String traceFile;
+    @Value(value = "${load-generator.rate.trace.speed-up}")
+    private double traceSpeedUp;
+    @Value(value = "${load-generator.rate.trace.loop}")
+    private boolean traceLoop;
+    @Value(value = "${load-generator.rate.trace.max-rate}")
+    private double traceMaxRate;
     @Value(value = "${backpressure.enabled}")
     private Boolean backpressureEnabled;
-    private final KafkaTemplate<String, Message> kafkaTemplate;
-    private final Random random = new Random();
+    @Value(value = "${experiment.enabled}")
+    private Boolean experimentEnabled;
+    @Value(value = "${load-generator.engine}")
+    private String engine;
+    @Value(value = "${load-generator.tick-micros}")
+    private long tickMicros;
+    @Value(value = "${load-generator.interactive-share}")
+    private double interactiveShare;
+    @Value(value = "${load-generator.payload.distribution}")
+    private String payloadDistribution;
+    @Value(value = "${load-generator.payload.size}")
+    private int payloadSize;
+    @Value(value = "${load-generator.payload.min-size}")
+    private int payloadMinSize;
+    @Value(value = "${load-generator.payload.max-size}")
+    private int payloadMaxSize;
+    @Value(value = "${load-generator.payload.sigma}")
+    private double payloadSigma;
+    @Value(value = "${load-generator.payload.pool-size}")
+    private int payloadPoolSize;
+    private final ProducerTuning producerTuning;
+    private final ProducerSendMetrics producerSendMetrics;
+    private final ThroughputMetrics throughputMetrics;
+    private final StageLatencyMetrics stageLatencyMetrics;
     private final TaskScheduler scheduler;
-    private final BackpressureGate backpressureGate;
+    private final Smoother smoother;
     private final ConfigurableApplicationContext ctx;
     @Getter
-    private StochasticLoadGenerator stochasticGenerator;
+    private volatile StochasticLoadGenerator stochasticGenerator;
 
 
     @SneakyThrows
     @EventListener(ApplicationReadyEvent.class)
     public void stochasticPublish() {
+        if (experimentEnabled) return; // ExperimentRunner starts one generator per configuration
         Thread.sleep(10_000); // wait Kafka
 
-        TimedTask kafkaSendTask = (t0) -> {
-            var message = new Message(t0, "payload-" + random.nextDouble() + random.nextDouble() + random.nextDouble());
-            kafkaTemplate.send(kafkaTopic, message);
+        startGenerator(HIGH_RATE, 5, backpressureEnabled, Duration.ofMinutes(DURATION_MINUTES), true);
+        log.info("StochasticGenerator started");
+    }
+
+    /**
+     * Builds and starts a generator with the configured shape/payload/engine and the given per-run knobs.
+     * duration null => runs until stop(); exitOnStop=false => stop() does not shut the application down.
+     */
+    public StochasticLoadGenerator startGenerator(double highRate, double batchMean, boolean smoothed,
+                                                  Duration duration, boolean exitOnStop) {
+        RateFunction rate = buildRate(highRate);
+
+        PayloadFactory payloads = PayloadFactory.of(payloadDistribution, payloadSize, payloadMinSize,
+                payloadMaxSize, payloadSigma, payloadPoolSize);
+
+        TimedTask kafkaSendTask = (t0, priority) -> {
+            var message = new Message(t0, payloads.next(), priority, System.currentTimeMillis());
+            // PHASE: the rate the generator computed, not a re-evaluation of the rate function on this thread
+            StochasticLoadGenerator generator = stochasticGenerator;
+            var kafkaTemplate = producerTuning.select(generator != null ? generator.getCurrentRate() : 0.0);
+            long sendStart = producerSendMetrics.onSend();
+            kafkaTemplate.send(kafkaTopic, message)
+                    .whenComplete((result, e) -> {
+                        producerSendMetrics.onComplete(e);
+                        if (e == null) stageLatencyMetrics.recordSince(StageLatencyMetrics.Stage.SEND, sendStart);
+                    });
             //log.info("Sent in Kafka: {}", message);
         };
 
+        if (smoothed && smoother instanceof BackpressureGate gate) {
+            gate.setSpillTask(kafkaSendTask); // replays spilled (and recovered) entries as sends
+        }
+
         StochasticLoadGenerator slg = StochasticLoadGenerator.builder()
                 .scheduler(scheduler)                        // твой TaskScheduler
                 .task(kafkaSendTask)                                  // твоя нагрузка
-                .rate(SquareWaveRate
-                        .of(2.0, HIGH_RATE, Duration.ofMinutes(1), 0.25)  // low=2 rps, high=50 rps, период=1м, duty=25%
-                        .withJitter(0.1))                           // ±10% рваность краёв
-                .batchSampler(GeometricBatchSize.ofMean(5)) // средняя пачка ~5
+                .rate(rate)
+                .batchSampler(GeometricBatchSize.ofMean(batchMean)) // средняя пачка ~5
                 .intraBatchSpread(Duration.ofMillis(200))   // разнести k задач по ~200мс
                 .ctx(ctx)
-                .backpressureGate(backpressureEnabled ? backpressureGate : null)// оставить, как в твоём stop()
+                .engine(StochasticLoadGenerator.Engine.valueOf(engine.toUpperCase()))
+                .tick(Duration.ofNanos(tickMicros * 1_000))
+                .prioritySampler(() -> ThreadLocalRandom.current().nextDouble() < interactiveShare ? 0 : 1) // 0 = interactive, 1 = bulk
+                .smoother(smoothed ? smoother : null)// оставить, как в твоём stop()
+                .throughputMetrics(throughputMetrics)
+                .stageLatencyMetrics(stageLatencyMetrics)
+                .exitOnStop(exitOnStop)
                 .build();
         this.stochasticGenerator = slg;
 
-        slg.start(Duration.ofMinutes(DURATION_MINUTES));
-        log.info("StochasticGenerator started");
+        slg.start(duration);
+        return slg;
+    }
+
+    private RateFunction buildRate(double highRate) {
+        Instant start = Instant.now();
+        Duration period = Duration.ofSeconds(ratePeriodSeconds);
+        RateFunction rate = switch (rateShape.toLowerCase()) {
+            case "square" -> SquareWaveRate
+                    .of(lowRate, highRate, period, 0.25)  // low=2 rps, high=50 rps, период=1м, duty=25%
+                    .withJitter(0.1);                      // ±10% рваность краёв
+            case "sine" -> SineRate.of(lowRate, highRate, period, start);
+            case "diurnal" -> DiurnalRate.of(lowRate, highRate, period, diurnalPeakHour, diurnalSharpness, start);
+            case "ramp" -> RampRate.of(lowRate, highRate, period, start);
+            case "piecewise" -> PiecewiseLinearRate.parse(piecewisePoints, start);
+            case "hawkes" -> HawkesRate.of(lowRate, hawkesBranching, Duration.ofMillis(hawkesDecayMs), highRate);
+            case "trace" -> TraceReplayRate.of(Path.of(traceFile), traceSpeedUp, traceLoop, traceMaxRate, start);
+            default -> throw new IllegalArgumentException("Unknown rate shape: " + rateShape);
+        };
+        log.info("Rate function: {} (upper bound {} rps)", rate.getClass().getSimpleName(), rate.upperBoundRatePerSecond());
+        return rate;
     }
 
     @PreDestroy
@@ -0,0 +1,68 @@
+package com.example.smoothing.service;
+
+import com.example.smoothing.metrics.ThroughputMetrics;
+import com.example.smoothing.model.Message;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the producer profile per send.
+ * STEADY: no linger, tiny batches — lowest latency in LOW phases.
+ * BURST: linger + big batches + compression — fewer produce requests in HIGH phases.
+ * Kafka producer configs are fixed per producer instance, so each profile is its own KafkaTemplate.
+ */
+@Slf4j
+@Component
+public class ProducerTuning {
+    public enum Mode { STATIC, PHASE, INGRESS }
+
+    public enum Profile { STEADY, BURST }
+
+    private final KafkaTemplate<String, Message> steadyTemplate;
+    private final KafkaTemplate<String, Message> burstTemplate;
+    private final Mode mode;
+    private final double burstThresholdRps;
+    private final ThroughputMetrics throughputMetrics;
+    @Getter
+    private volatile Profile profile = Profile.STEADY;
+
+    public ProducerTuning(
+            KafkaTemplate<String, Message> kafkaTemplate,
+            @Qualifier("burstKafkaTemplate") KafkaTemplate<String, Message> burstKafkaTemplate,
+            ThroughputMetrics throughputMetrics,
+            @Value("${producer.tuning.mode}") String mode,
+            @Value("${producer.tuning.burst-threshold-rps}") double burstThresholdRps
+    ) {
+        this.steadyTemplate = kafkaTemplate;
+        this.burstTemplate = burstKafkaTemplate;
+        this.mode = Mode.valueOf(mode.toUpperCase());
+        this.burstThresholdRps = burstThresholdRps;
+        this.throughputMetrics = throughputMetrics;
+        log.info("Producer tuning mode={}, burst threshold={} rps", this.mode, burstThresholdRps);
+    }
+
+    /** @param generatorRate the generator's current rate (StochasticLoadGenerator.getCurrentRate()), used by PHASE */
+    public KafkaTemplate<String, Message> select(double generatorRate) {
+        Profile next = switch (mode) {
+            case STATIC -> Profile.STEADY;
+            case PHASE -> generatorRate >= burstThresholdRps
+                    ? Profile.BURST : Profile.STEADY;
+            case INGRESS -> {
+                // hysteresis: enter BURST at threshold, leave below half of it
+                double ingress = throughputMetrics.getCurrentIngressRate();
+                if (ingress >= burstThresholdRps) yield Profile.BURST;
+                if (ingress < burstThresholdRps / 2) yield Profile.STEADY;
+                yield profile;
+            }
+        };
+        if (next != profile) {
+            profile = next;
+            log.info("Producer profile -> {}", next);
+        }
+        return next == Profile.BURST ? burstTemplate : steadyTemplate;
+    }
+}
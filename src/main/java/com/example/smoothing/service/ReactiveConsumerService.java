@@ -0,0 +1,153 @@
+package com.example.smoothing.service;
+
+import com.example.smoothing.db.ReactiveEventDao;
+import com.example.smoothing.metrics.LatencyMetrics;
+import com.example.smoothing.metrics.SampledLog;
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import com.example.smoothing.metrics.ThroughputMetrics;
+import com.example.smoothing.model.Message;
+import com.example.smoothing.smoothing.Smoother;
+import com.example.smoothing.smoothing.remote.RemoteCreditIssuer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOptions;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * pipeline.mode=reactive: reactor-kafka receive → bounded flatMap → R2DBC (or a 30 ms timer in mock mode).
+ * No thread is parked per message; at most pipeline.reactive.concurrency records are in flight.
+ * Demand is the credit signal: each finished record frees one flatMap slot and is granted to the smoother
+ * (or to remote producers) as one credit right away. flatMap's own request(n) to the receiver is
+ * replenished in chunks of 3/4 of the concurrency, too coarse for the gate; it is only exported as a gauge.
+ * Records finish out of order; offsets are still committed in order (deferred commits, see KafkaConfig),
+ * so a crash redelivers every record that was in flight.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "pipeline.mode", havingValue = "reactive")
+public class ReactiveConsumerService {
+    private final ReceiverOptions<String, Message> reactiveReceiverOptions;
+    private final ReactiveEventDao reactiveEventDao;
+    private final Smoother smoother;
+    private final RemoteCreditIssuer remoteCreditIssuer;
+    private final KafkaTemplate<String, Message> kafkaTemplate;
+    private final LatencyMetrics latencyMetrics;
+    private final ThroughputMetrics throughputMetrics;
+    private final StageLatencyMetrics stageLatencyMetrics;
+    // mutable: ExperimentRunner switches them between configurations
+    @Setter
+    @Value(value = "${backpressure.enabled}")
+    private volatile Boolean backpressureEnabled;
+    @Setter
+    @Value(value = "${db-enabled}")
+    private volatile Boolean dbEnabled;
+    @Value(value = "${pipeline.reactive.concurrency}")
+    private int concurrency;
+    @Value(value = "${deadline.enabled}")
+    private Boolean deadlineEnabled;
+    @Value(value = "${deadline.ms}")
+    private long deadlineMs;
+    @Value(value = "${deadline.action}")
+    private String deadlineAction; // drop | dead-letter
+    @Value(value = "${deadline.dead-letter-topic}")
+    private String deadLetterTopic;
+    @Value(value = "${metrics.log-interval-seconds}")
+    private long logIntervalSeconds;
+
+    @Getter
+    private final AtomicInteger inFlight = new AtomicInteger();
+    @Getter
+    private final LongAdder demand = new LongAdder();
+    @Getter
+    private final LongAdder expired = new LongAdder();
+    @Getter
+    private final LongAdder failures = new LongAdder();
+    private Disposable subscription;
+    private SampledLog errorLog;
+
+    @PostConstruct
+    void start() {
+        errorLog = new SampledLog(logIntervalSeconds * 1000);
+        subscription = KafkaReceiver.create(reactiveReceiverOptions)
+                .receive()
+                .doOnRequest(demand::add)
+                .flatMap(rec -> process(rec.value()).doFinally(s -> {
+                    rec.receiverOffset().acknowledge();
+                    grantBackpressureCredit();
+                }), concurrency)
+                .subscribe(null, e -> log.error("Reactive pipeline terminated", e));
+        log.info("Reactive consumer pipeline: concurrency={}", concurrency);
+    }
+
+    private Mono<Void> process(Message msg) {
+        if (msg == null) { // undecodable record (ErrorHandlingDeserializer)
+            failures.increment();
+            long skipped = errorLog.tryAcquire();
+            if (skipped >= 0) log.error("Skipped an undecodable record ({} similar suppressed)", skipped);
+            return Mono.empty();
+        }
+        long consumedNanos = System.nanoTime();
+        stageLatencyMetrics.recordBrokerTransit(msg.sentAtMs());
+        if (deadlineEnabled && System.currentTimeMillis() - msg.startTimeMs() > deadlineMs) {
+            shedExpired(msg);
+            return Mono.empty();
+        }
+        inFlight.incrementAndGet();
+        Mono<Void> work = dbEnabled
+                ? reactiveEventDao.insert(msg.startTimeMs(), msg.payload())
+                        .then(reactiveEventDao.insert(msg.startTimeMs(), msg.payload()))
+                : Mono.delay(Duration.ofMillis(30)).then();
+        return work
+                .doOnSuccess(v -> {
+                    stageLatencyMetrics.recordSince(StageLatencyMetrics.Stage.DB, consumedNanos);
+                    long e2eMs = System.currentTimeMillis() - msg.startTimeMs();
+                    latencyMetrics.record(e2eMs, msg.priority());
+                    latencyMetrics.recordDownstream(msg.sentAtMs());
+                    throughputMetrics.incrementThroughputCount();
+                })
+                .onErrorResume(e -> {
+                    failures.increment();
+                    long skipped = errorLog.tryAcquire();
+                    if (skipped >= 0) log.error("Error in reactive pipeline ({} similar suppressed)", skipped, e);
+                    return Mono.empty();
+                })
+                .doFinally(s -> inFlight.decrementAndGet());
+    }
+
+    private void shedExpired(Message msg) {
+        expired.increment();
+        if ("dead-letter".equalsIgnoreCase(deadlineAction)) {
+            kafkaTemplate.send(deadLetterTopic, msg).whenComplete((r, e) -> {
+                if (e != null) log.error("Dead-letter send failed", e);
+            });
+        }
+    }
+
+    private void grantBackpressureCredit() {
+        if (remoteCreditIssuer.isEnabled()) {
+            remoteCreditIssuer.onCompleted(1);
+        } else if (backpressureEnabled) {
+            smoother.onCompleted(1);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (subscription != null) subscription.dispose();
+    }
+}
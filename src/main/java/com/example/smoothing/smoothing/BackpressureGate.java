@@ -1,38 +1,156 @@
 package com.example.smoothing.smoothing;
 
+import com.example.smoothing.generator.TimedTask;
+import com.example.smoothing.metrics.StageLatencyMetrics;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 @Slf4j
 @Service
-public final class BackpressureGate {
+public final class BackpressureGate implements Smoother {
     // === ИСПОЛНИТЕЛЬ ===
-    // Пул без внутренней очереди: прямой hand-off. Нет «второго буфера».
-    private final ThreadPoolExecutor executor;
+    // PLATFORM: пул без внутренней очереди, прямой hand-off. Нет «второго буфера».
+    // VIRTUAL: виртуальный поток на задачу.
+    private final ExecutorService executor;
     @Getter
-    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(20_000);
+    private final ExecutorMode executorMode;
+    // Для сравнения режимов: сколько задач сейчас выполняется, пик, и сколько раз сработал CallerRuns
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    @Getter
+    private final AtomicInteger peakWorkers = new AtomicInteger();
+    @Getter
+    private final AtomicLong callerRuns = new AtomicLong();
+    // Очереди задач по классам (0 = самый приоритетный): преаллоцированные MPSC-кольца слотов
+    // (createdTime, task), без замыканий на enqueue
+    private final MpscRingBuffer<TimedTask>[] queues;
+    private final MpscRingBuffer.SlotConsumer<TimedTask>[] dispatchers;
+    private final MpscRingBuffer.SlotConsumer<TimedTask> discarder = (createdTime, enqueuedNanos, task) -> { };
+    @Getter
+    private final ClassScheduling classScheduling;
+    // WFQ: веса классов и текущие счётчики smooth weighted round-robin (трогает только дренёр)
+    private final int[] weights;
+    private final long[] currentWeight;
+    @Getter
+    private final OverflowPolicy overflowPolicy;
+    // Сколько задач выброшено политикой переполнения
+    @Getter
+    private final AtomicLong shed = new AtomicLong();
+    // SPILL: переполнение кольца уходит в mmap-сегменты на диске (лог на класс), отдаётся после кольца (FIFO),
+    // переживает рестарт (at-least-once: курсор двигается после runTracked). Само кольцо (до queue-capacity
+    // записей на класс) в памяти и при падении теряется. Записи с диска исполняются spillTask; null = ещё не задана
+    private final SpillLog[] spills;
+    private volatile TimedTask spillTask;
+    @Getter
+    private final AtomicLong spilled = new AtomicLong();
+    // Дедлайн от createdTime: протухшие задачи выбрасываются при дренаже, не тратя кредит
+    private final long deadlineMs;
+    @Getter
+    private final AtomicLong expired = new AtomicLong();
     @Getter
     private final AtomicLong credits;
+    // Текущий размер бюджета кредитов (available + in-flight). Меняется через resize().
+    @Getter
+    private volatile long creditLimit;
+    // Внешний сигнал (лаг консьюмер-группы): пока true, кредиты копятся, но не выдаются
+    @Getter
+    private volatile boolean withheld;
+    private final StageLatencyMetrics stageLatencyMetrics;
+    // Переиспользуемые обёртки для executor (вместо захватывающей лямбды на каждый dispatch).
+    // Берёт только дренёр, возвращают воркеры: стек Трайбера с одним снимающим — без ABA
+    private final AtomicReference<Dispatch> freeDispatches = new AtomicReference<>();
     // Защита от параллельных drain(): один активный дренёр
     private final AtomicInteger wip = new AtomicInteger(0);
 
+    public enum ExecutorMode { PLATFORM, VIRTUAL }
+
+    /**
+     * What enqueue does when the ring is full. Dropped tasks are counted in {@link #getShed()}.
+     * SPILL appends to the class's disk log (see {@link #setSpillTask}); when the log is at max-segments it blocks.
+     * Only that overflow is durable: the ring itself (queue-capacity entries per class) is lost on a crash.
+     */
+    public enum OverflowPolicy { BLOCK, DROP_OLDEST, DROP_NEWEST, SPILL }
+
+    /** Which class gets the next credit. STRICT: lowest non-empty class. WFQ: weighted by class-weights. */
+    public enum ClassScheduling { STRICT, WFQ }
+
+    @SuppressWarnings("unchecked")
     public BackpressureGate(
-            @Value("${backpressure.credits}") long credits
+            StageLatencyMetrics stageLatencyMetrics,
+            @Value("${backpressure.credits}") long credits,
+            @Value("${backpressure.executor}") String executorMode,
+            @Value("${backpressure.queue-capacity}") int queueCapacity,
+            @Value("${backpressure.overflow-policy}") String overflowPolicy,
+            @Value("${backpressure.class-scheduling}") String classScheduling,
+            @Value("${backpressure.class-weights}") int[] classWeights,
+            @Value("${deadline.enabled}") boolean deadlineEnabled,
+            @Value("${deadline.ms}") long deadlineMs,
+            @Value("${backpressure.spill.dir}") String spillDir,
+            @Value("${backpressure.spill.segment-mb}") int spillSegmentMb,
+            @Value("${backpressure.spill.max-segments}") int spillMaxSegments
     ) {
+        if (classWeights.length == 0) throw new IllegalArgumentException("class-weights must not be empty");
+        int classes = classWeights.length;
+        this.queues = new MpscRingBuffer[classes];
+        this.dispatchers = new MpscRingBuffer.SlotConsumer[classes];
+        for (int c = 0; c < classes; c++) {
+            if (classWeights[c] <= 0) throw new IllegalArgumentException("class weights must be > 0");
+            final int priority = c;
+            queues[c] = new MpscRingBuffer<>(queueCapacity);
+            dispatchers[c] = (createdTime, enqueuedNanos, task) -> dispatch(createdTime, enqueuedNanos, priority, task, -1);
+        }
+        this.stageLatencyMetrics = stageLatencyMetrics;
+        this.weights = classWeights.clone();
+        this.currentWeight = new long[classes];
+        this.classScheduling = ClassScheduling.valueOf(classScheduling.toUpperCase());
+        this.deadlineMs = deadlineEnabled ? deadlineMs : 0;
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase());
+        this.spills = this.overflowPolicy == OverflowPolicy.SPILL
+                ? openSpills(Path.of(spillDir), classes, spillSegmentMb, spillMaxSegments) : null;
         this.credits = new AtomicLong(credits);
+        this.creditLimit = credits;
+        this.executorMode = ExecutorMode.valueOf(executorMode.toUpperCase());
+        this.executor = switch (this.executorMode) {
+            case PLATFORM -> platformExecutor();
+            case VIRTUAL -> virtualExecutor();
+        };
+        log.info("BackpressureGate executor mode: {}, queue capacity: {} x {} classes, overflow: {}, scheduling: {} {}",
+                this.executorMode, queues[0].capacity(), classes, this.overflowPolicy,
+                this.classScheduling, Arrays.toString(weights));
+    }
+
+    private static SpillLog[] openSpills(Path dir, int classes, int segmentMb, int maxSegments) {
+        SpillLog[] logs = new SpillLog[classes];
+        try {
+            for (int c = 0; c < classes; c++) {
+                logs[c] = new SpillLog(dir.resolve("class-" + c), segmentMb << 20, maxSegments);
+                if (logs[c].size() > 0) log.info("Spill class {}: recovered {} unsent entries", c, logs[c].size());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open spill directory " + dir, e);
+        }
+        return logs;
+    }
+
+    private ExecutorService platformExecutor() {
         // === НАСТРОЙКИ ===
         // Сколько одновременно воркеров реально выполняют задачи.
         // Подстрой под пул соединений БД. Для твоей машины начни с 64..128.
         int maxWorkers = 300;
 
-        this.executor = new ThreadPoolExecutor(
+        return new ThreadPoolExecutor(
                 maxWorkers,
                 maxWorkers,
                 0L, TimeUnit.MILLISECONDS,
@@ -45,24 +163,172 @@ public final class BackpressureGate {
                 },
                 // Когда все воркеры заняты — пусть вызывающий поток сам выполнит задачу
                 // Это даёт честный мгновенный backpressure и не накачивает очереди.
-                new ThreadPoolExecutor.CallerRunsPolicy()
+                (r, pool) -> {
+                    callerRuns.incrementAndGet();
+                    if (!pool.isShutdown()) r.run();
+                }
         );
     }
 
-    public void enqueue(Runnable r) {
-        boolean ok = queue.offer(r);
-        if (!ok) {
-            try {
-                queue.put(r);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("queue interrupted", e);
-                return;
+    /**
+     * Thread per task on virtual threads: no pool size, no caller-runs, credits are the only bound.
+     * Needs JDK 21 at runtime (build with the jdk21 profile); looked up reflectively so the
+     * default JDK 17 build still compiles.
+     */
+    private static ExecutorService virtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("backpressure.executor=virtual requires JDK 21+, running on "
+                    + Runtime.version(), e);
+        }
+    }
+
+    /** Single-class shortcut: everything goes to class 0. */
+    public void enqueue(long createdTime, TimedTask task) {
+        enqueue(createdTime, 0, task);
+    }
+
+    /**
+     * Allocation-free on the happy path: the slot stores the shared task and its created time.
+     * Priorities outside [0, classes) are clamped.
+     */
+    @Override
+    public void enqueue(long createdTime, int priority, TimedTask task) {
+        int c = Math.max(0, Math.min(queues.length - 1, priority));
+        MpscRingBuffer<TimedTask> queue = queues[c];
+        if (spills != null) {
+            if (!enqueueSpilling(c, createdTime, task)) return;
+        } else if (!queue.offer(createdTime, task)) {
+            switch (overflowPolicy) {
+                case BLOCK -> {
+                    if (!offerBlocking(queue, createdTime, task)) return;
+                }
+                case DROP_OLDEST -> offerDroppingOldest(queue, createdTime, task);
+                case DROP_NEWEST -> {
+                    shed.incrementAndGet();
+                    return;
+                }
             }
         }
         drain();
     }
 
+    /**
+     * Task that entries read back from disk are run with: the generator's send task. Entries are stored as
+     * (createdTime, enqueue time) only, so only this task is spilled; others block when the ring is full.
+     * Until it is set SPILL behaves like BLOCK, and entries recovered after a restart wait on disk (new entries
+     * of their class wait behind them).
+     */
+    public void setSpillTask(TimedTask task) {
+        spillTask = task;
+        drain();
+    }
+
+    /**
+     * SPILL: the ring only while the class has nothing on disk, otherwise behind the spilled entries.
+     * Decided under the log's monitor, so an entry never overtakes an older spilled one. When it cannot be
+     * appended (log at max-segments, not the spill task, I/O error) it waits for the log to shrink, never
+     * going to the ring ahead of the log. @return false if interrupted while waiting
+     */
+    private boolean enqueueSpilling(int c, long createdTime, TimedTask task) {
+        SpillLog spill = spills[c];
+        boolean appendable = task == spillTask;
+        while (true) {
+            synchronized (spill) {
+                if (spill.size() == 0 && queues[c].offer(createdTime, task)) return true;
+                if (appendable) {
+                    try {
+                        if (spill.append(createdTime, System.currentTimeMillis())) {
+                            spilled.incrementAndGet();
+                            return true;
+                        }
+                    } catch (IOException e) {
+                        log.error("Spill append failed, waiting for the ring instead", e);
+                        appendable = false;
+                    }
+                }
+            }
+            drain();
+            LockSupport.parkNanos(50_000);
+            if (Thread.currentThread().isInterrupted()) {
+                log.error("enqueue interrupted while the spill log is full");
+                return false;
+            }
+        }
+    }
+
+    /** Drainer thread only: dispatches the oldest spilled entry of class c (ring c is empty). */
+    private boolean pollSpill(int c) {
+        TimedTask task = spillTask;
+        if (spills == null || task == null) return false;
+        SpillLog spill = spills[c];
+        while (true) {
+            long createdTime, enqueuedAtMs, token;
+            synchronized (spill) {
+                if (spill.size() == 0) return false;
+                try {
+                    createdTime = spill.peekCreatedTime();
+                    enqueuedAtMs = spill.peekEnqueuedAtMs();
+                } catch (IOException e) {
+                    log.error("Spill read failed", e);
+                    return false;
+                }
+                token = spill.take();
+            }
+            long nowMs = System.currentTimeMillis();
+            if (deadlineMs > 0 && createdTime < nowMs - deadlineMs) {
+                expired.incrementAndGet();
+                completeSpilled(c, token);
+                continue;
+            }
+            dispatch(createdTime, System.nanoTime() - (nowMs - enqueuedAtMs) * 1_000_000, c, task, token);
+            return true;
+        }
+    }
+
+    /** A spilled entry has run (or expired): its disk cursor may move past it. */
+    private void completeSpilled(int c, long token) {
+        SpillLog spill = spills[c];
+        synchronized (spill) {
+            try {
+                spill.complete(token);
+            } catch (IOException e) {
+                log.error("Spill segment cleanup failed", e);
+            }
+        }
+    }
+
+    private boolean offerBlocking(MpscRingBuffer<TimedTask> queue, long createdTime, TimedTask task) {
+        while (!queue.offer(createdTime, task)) {
+            drain();
+            LockSupport.parkNanos(50_000);
+            if (Thread.currentThread().isInterrupted()) {
+                log.error("enqueue interrupted while queue is full");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Выбросить самый старый слот может только текущий дренёр: забираем роль через wip.
+    private void offerDroppingOldest(MpscRingBuffer<TimedTask> queue, long createdTime, TimedTask task) {
+        while (!queue.offer(createdTime, task)) {
+            if (wip.compareAndSet(0, 1)) {
+                if (queue.poll(discarder)) shed.incrementAndGet();
+                drainLoop(1);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /** Consumer feedback: every completion returns its credit. */
+    @Override
+    public void onCompleted(long n) {
+        grant(n);
+    }
+
     public void grant(long n) {
         if (n > 0) {
             credits.addAndGet(n);
@@ -70,18 +336,174 @@ public final class BackpressureGate {
         }
     }
 
+    /**
+     * Resize the credit budget live. Shrinking may push available credits below zero:
+     * the debt is paid off by the next grants, in-flight work is never cancelled.
+     */
+    public synchronized void resize(long newLimit) {
+        long delta = newLimit - creditLimit;
+        if (delta == 0) return;
+        creditLimit = newLimit;
+        credits.addAndGet(delta);
+        if (delta > 0) drain();
+    }
+
+    /**
+     * Withhold admission while the downstream backlog is too large (see ConsumerLagMonitor).
+     * Completions keep returning credits meanwhile; they are spent once the hold is released.
+     */
+    public void withhold(boolean hold) {
+        if (withheld == hold) return;
+        withheld = hold;
+        if (!hold) drain();
+    }
+
+    /** Credits currently taken by dispatched, not yet completed work. */
+    public long getInFlight() {
+        return creditLimit - credits.get();
+    }
+
+    // wip: кто увеличил с 0 — тот единственный дренёр; остальные лишь просят ещё один проход
     private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+        drainLoop(1);
+    }
+
+    private void drainLoop(int missed) {
+        do {
+            while (!withheld && tryAcquireCredit()) {   // no credits or held → stop
+                if (deadlineMs > 0) dropExpired();
+                int c = nextClass();
+                if (c < 0 || !(queues[c].poll(dispatchers[c]) || pollSpill(c))) { // no task → credit back
+                    credits.incrementAndGet();
+                    break;
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /** Queues are FIFO per class, so stale work sits at the heads. Drainer thread only. */
+    private void dropExpired() {
+        long staleBefore = System.currentTimeMillis() - deadlineMs;
+        for (MpscRingBuffer<TimedTask> q : queues) {
+            while (q.peekCreatedTime() < staleBefore && q.poll(discarder)) {
+                expired.incrementAndGet();
+            }
+        }
+    }
+
+    /** Class to serve next, -1 if all queues are empty. Drainer thread only. */
+    private int nextClass() {
+        if (classScheduling == ClassScheduling.STRICT) {
+            for (int c = 0; c < queues.length; c++) {
+                if (hasWork(c)) return c;
+            }
+            return -1;
+        }
+        // smooth weighted round-robin over non-empty classes
+        int best = -1;
+        long total = 0;
+        for (int c = 0; c < queues.length; c++) {
+            if (!hasWork(c)) continue;
+            currentWeight[c] += weights[c];
+            total += weights[c];
+            if (best < 0 || currentWeight[c] > currentWeight[best]) best = c;
+        }
+        if (best >= 0) currentWeight[best] -= total;
+        return best;
+    }
+
+    private boolean hasWork(int c) {
+        return queues[c].size() > 0 || (spills != null && spillTask != null && spills[c].size() > 0);
+    }
+
+    /** @param spillToken SpillLog token of a spilled entry, completed after the task has run; -1 for ring entries */
+    private void dispatch(long createdTime, long enqueuedNanos, int priority, TimedTask task, long spillToken) {
+        Dispatch d = acquireDispatch();
+        d.task = task;
+        d.createdTime = createdTime;
+        d.enqueuedNanos = enqueuedNanos;
+        d.priority = priority;
+        d.spillToken = spillToken;
+        executor.execute(d); // got a task → execute it, credit is spent
+    }
+
+    /** Drainer thread only. Allocates only until the pool covers the peak number of pending hand-offs. */
+    private Dispatch acquireDispatch() {
         while (true) {
-            if (!tryAcquireCredit()) break;             // no credits → break
-            Runnable r = queue.poll();                  // trying to take task
-            if (r == null) {                            // no task → credit back
-                credits.incrementAndGet();
-                break;
+            Dispatch d = freeDispatches.get();
+            if (d == null) return new Dispatch();
+            if (freeDispatches.compareAndSet(d, d.next)) {
+                d.next = null;
+                return d;
             }
-            executor.execute(r);                        // got a task → execute the task and spend credit
         }
     }
 
+    /** Task holder handed to the executor; back on the free stack as soon as a worker has read it. */
+    private final class Dispatch implements Runnable {
+        TimedTask task;
+        long createdTime;
+        long enqueuedNanos;
+        int priority;
+        long spillToken;
+        Dispatch next;
+
+        @Override
+        public void run() {
+            TimedTask t = task;
+            long created = createdTime, enqueued = enqueuedNanos, token = spillToken;
+            int p = priority;
+            task = null;
+            Dispatch head;
+            do {
+                head = freeDispatches.get();
+                next = head;
+            } while (!freeDispatches.compareAndSet(head, this));
+            runTracked(t, created, enqueued, p);
+            if (token >= 0) completeSpilled(p, token);
+        }
+    }
+
+    public int getClasses() {
+        return queues.length;
+    }
+
+    /** Ring + spilled entries. */
+    @Override
+    public int getQueueDepth() {
+        long depth = 0;
+        for (int c = 0; c < queues.length; c++) depth += getQueueDepth(c);
+        return (int) Math.min(Integer.MAX_VALUE, depth);
+    }
+
+    public int getQueueDepth(int priority) {
+        return (int) Math.min(Integer.MAX_VALUE, queues[priority].size() + getSpillDepth(priority));
+    }
+
+    /** Entries waiting on disk (overflow-policy=spill). */
+    public long getSpillDepth(int priority) {
+        return spills == null ? 0 : spills[priority].size();
+    }
+
+    private void runTracked(TimedTask task, long createdTime, long enqueuedNanos, int priority) {
+        int active = activeWorkers.incrementAndGet();
+        peakWorkers.accumulateAndGet(active, Math::max);
+        stageLatencyMetrics.recordSince(StageLatencyMetrics.Stage.GATE, enqueuedNanos);
+        try {
+            task.run(createdTime, priority);
+        } catch (Throwable t) {
+            log.error("task.run() failed", t);
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
     private boolean tryAcquireCredit() {
         while (true) {
             long c = credits.get();
@@ -93,5 +515,12 @@ public final class BackpressureGate {
     @PreDestroy
     public void shutdown() {
         executor.shutdown();
+        if (spills != null) {
+            for (SpillLog spill : spills) {
+                synchronized (spill) {
+                    spill.close();
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,67 @@
+package com.example.smoothing.smoothing;
+
+import com.example.smoothing.generator.TimedTask;
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evenly spaced output (bucket of size 1).
+ * Fixed: constant rate. Adaptive: rate = long-run average of the input (EWMA) + backlog / drainSeconds,
+ * never below the configured rate, i.e. bursts are spread over the average without any feedback from the sink.
+ */
+@Slf4j
+public final class LeakyBucketSmoother extends PacedSmoother {
+    private static final long ADAPT_PERIOD_NANOS = 1_000_000_000L;
+
+    private final double baseRate;
+    private final boolean adaptive;
+    private final double ewmaAlpha;
+    private final double drainSeconds;
+    private final LongAdder arrivals = new LongAdder();
+
+    // Pacer-thread state
+    private long lastAdapt = System.nanoTime();
+    private double ewmaInputRate;
+    @Getter
+    private volatile double rate;
+
+    public LeakyBucketSmoother(double ratePerSecond, boolean adaptive, double ewmaAlpha, double drainSeconds,
+                               int classes, int queueCapacity, StageLatencyMetrics stageLatencyMetrics) {
+        super("leaky-bucket-pacer", 1.0, classes, queueCapacity, stageLatencyMetrics);
+        if (!(ratePerSecond > 0.0)) throw new IllegalArgumentException("rate must be > 0");
+        if (!(ewmaAlpha > 0.0) || ewmaAlpha > 1.0) throw new IllegalArgumentException("ewmaAlpha must be in (0,1]");
+        if (!(drainSeconds > 0.0)) throw new IllegalArgumentException("drainSeconds must be > 0");
+        this.baseRate = ratePerSecond;
+        this.adaptive = adaptive;
+        this.ewmaAlpha = ewmaAlpha;
+        this.drainSeconds = drainSeconds;
+        this.ewmaInputRate = ratePerSecond;
+        this.rate = ratePerSecond;
+        log.info("LeakyBucketSmoother: rate={}/s, adaptive={}, ewmaAlpha={}, drain={}s",
+                ratePerSecond, adaptive, ewmaAlpha, drainSeconds);
+        start();
+    }
+
+    @Override
+    public void enqueue(long createdTime, int priority, TimedTask task) {
+        arrivals.increment();
+        super.enqueue(createdTime, priority, task);
+    }
+
+    @Override
+    protected double currentRatePerSecond() {
+        if (!adaptive) return baseRate;
+        long now = System.nanoTime();
+        long elapsed = now - lastAdapt;
+        if (elapsed >= ADAPT_PERIOD_NANOS) {
+            double inputRate = arrivals.sumThenReset() * 1e9 / elapsed;
+            ewmaInputRate = ewmaAlpha * inputRate + (1 - ewmaAlpha) * ewmaInputRate;
+            rate = Math.max(baseRate, ewmaInputRate + getQueueDepth() / drainSeconds);
+            lastAdapt = now;
+        }
+        return rate;
+    }
+}
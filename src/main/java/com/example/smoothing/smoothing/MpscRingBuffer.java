@@ -0,0 +1,95 @@
+package com.example.smoothing.smoothing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, preallocated multi-producer / single-consumer ring of (createdTime, enqueuedNanos, payload) slots.
+ * Per-slot sequence numbers (Vyukov): producers claim a slot by CAS on tail, publish it by bumping
+ * the slot sequence. poll() must be called by one thread at a time (the gate's wip drainer).
+ * No allocation on offer/poll.
+ */
+final class MpscRingBuffer<T> {
+    @FunctionalInterface
+    interface SlotConsumer<T> {
+        void accept(long createdTime, long enqueuedNanos, T payload);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final long[] times;
+    private final long[] enqueuedNanos;
+    private final Object[] payloads;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // written only by the single consumer
+
+    MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        int cap = 1;
+        while (cap < requestedCapacity) cap <<= 1; // power of two → index by mask
+        this.capacity = cap;
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.enqueuedNanos = new long[capacity];
+        this.payloads = new Object[capacity];
+        this.sequence = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) sequence.set(i, i);
+    }
+
+    /** @return false if the ring is full. */
+    boolean offer(long createdTime, T payload) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long dif = sequence.get(idx) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    times[idx] = createdTime;
+                    enqueuedNanos[idx] = System.nanoTime();
+                    payloads[idx] = payload;
+                    sequence.set(idx, pos + 1); // publish
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;                   // slot not yet freed by the consumer → full
+            } else {
+                pos = tail.get();               // another producer took it
+            }
+        }
+    }
+
+    /** Single consumer only. @return false if nothing is published at head. */
+    @SuppressWarnings("unchecked")
+    boolean poll(SlotConsumer<T> consumer) {
+        long h = head;
+        int idx = (int) (h & mask);
+        if (sequence.get(idx) != h + 1) return false;
+        long createdTime = times[idx];
+        long enqueued = enqueuedNanos[idx];
+        T payload = (T) payloads[idx];
+        payloads[idx] = null;
+        sequence.set(idx, h + capacity);        // free slot for the next lap
+        head = h + 1;
+        consumer.accept(createdTime, enqueued, payload);
+        return true;
+    }
+
+    /** Single consumer only. createdTime of the head slot, Long.MAX_VALUE if nothing is published. */
+    long peekCreatedTime() {
+        long h = head;
+        int idx = (int) (h & mask);
+        if (sequence.get(idx) != h + 1) return Long.MAX_VALUE;
+        return times[idx];
+    }
+
+    int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(capacity, size));
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
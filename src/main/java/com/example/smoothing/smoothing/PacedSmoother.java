@@ -0,0 +1,133 @@
+package com.example.smoothing.smoothing;
+
+import com.example.smoothing.generator.TimedTask;
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token-bucket pacing on one dedicated thread: tokens accrue at {@link #currentRatePerSecond()}
+ * up to {@code burst}; every token releases one queued task (lowest class first).
+ * The pacer parks until the next token is due and spins the last few µs, so output spacing does not
+ * depend on per-task scheduling. Tasks run on the pacer thread: they are expected to be short
+ * (an async Kafka send).
+ */
+@Slf4j
+public abstract class PacedSmoother implements Smoother, AutoCloseable {
+    private static final long SPIN_NANOS = 50_000;
+    private static final long IDLE_PARK_NANOS = 10_000_000;
+
+    private final MpscRingBuffer<TimedTask>[] queues;
+    private final MpscRingBuffer.SlotConsumer<TimedTask>[] dispatchers;
+    private final double burst;
+    private final StageLatencyMetrics stageLatencyMetrics;
+    private final Thread pacer;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+    @Getter
+    private final AtomicLong shed = new AtomicLong();
+    @Getter
+    private final AtomicLong released = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    protected PacedSmoother(String name, double burst, int classes, int queueCapacity,
+                            StageLatencyMetrics stageLatencyMetrics) {
+        if (!(burst >= 1.0)) throw new IllegalArgumentException("burst must be >= 1");
+        if (classes <= 0) throw new IllegalArgumentException("classes must be > 0");
+        this.burst = burst;
+        this.stageLatencyMetrics = stageLatencyMetrics;
+        this.queues = new MpscRingBuffer[classes];
+        this.dispatchers = new MpscRingBuffer.SlotConsumer[classes];
+        for (int c = 0; c < classes; c++) {
+            final int priority = c;
+            queues[c] = new MpscRingBuffer<>(queueCapacity);
+            dispatchers[c] = (createdTime, enqueuedNanos, task) -> run(task, createdTime, enqueuedNanos, priority);
+        }
+        this.pacer = new Thread(this::paceLoop, name);
+        this.pacer.setDaemon(true);
+    }
+
+    /** Subclasses call this once fully constructed. */
+    protected final void start() {
+        pacer.start();
+    }
+
+    /** Output rate, tasks/sec. Read by the pacer thread before every release. */
+    protected abstract double currentRatePerSecond();
+
+    @Override
+    public void enqueue(long createdTime, int priority, TimedTask task) {
+        MpscRingBuffer<TimedTask> queue = queues[Math.max(0, Math.min(queues.length - 1, priority))];
+        if (!queue.offer(createdTime, task)) {
+            shed.incrementAndGet(); // full: drop newest
+            return;
+        }
+        if (idle) LockSupport.unpark(pacer);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int depth = 0;
+        for (MpscRingBuffer<TimedTask> q : queues) depth += q.size();
+        return depth;
+    }
+
+    private void paceLoop() {
+        double tokens = burst;
+        long last = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            double rate = Math.max(1e-3, currentRatePerSecond());
+            tokens = Math.min(burst, tokens + (now - last) * rate / 1e9);
+            last = now;
+            while (tokens >= 1.0 && releaseOne()) {
+                tokens -= 1.0;
+            }
+            if (getQueueDepth() == 0) {
+                idle = true;
+                if (getQueueDepth() == 0) LockSupport.parkNanos(IDLE_PARK_NANOS);
+                idle = false;
+            } else {
+                parkPrecisely(now + (long) ((1.0 - tokens) / rate * 1e9));
+            }
+        }
+    }
+
+    private boolean releaseOne() {
+        for (int c = 0; c < queues.length; c++) {
+            if (queues[c].poll(dispatchers[c])) {
+                released.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void parkPrecisely(long deadline) {
+        long left;
+        while ((left = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(left - SPIN_NANOS);
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void run(TimedTask task, long createdTime, long enqueuedNanos, int priority) {
+        stageLatencyMetrics.recordSince(StageLatencyMetrics.Stage.GATE, enqueuedNanos);
+        try {
+            task.run(createdTime, priority);
+        } catch (Throwable t) {
+            log.error("task.run() failed", t);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(pacer);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.smoothing.smoothing;
+
+import com.example.smoothing.generator.TimedTask;
+
+/**
+ * Sits between the load generator and the sink and reshapes bursts.
+ * Credit-based ({@link BackpressureGate}) needs completions fed back through {@link #onCompleted};
+ * rate-based smoothers ({@link TokenBucketSmoother}, {@link LeakyBucketSmoother}) need no feedback
+ * channel, so producers and consumers can run on different nodes.
+ */
+public interface Smoother {
+    void enqueue(long createdTime, int priority, TimedTask task);
+
+    /** Sink finished n tasks. No-op for smoothers that do not use feedback. */
+    default void onCompleted(long n) {
+    }
+
+    int getQueueDepth();
+}
@@ -0,0 +1,209 @@
+package com.example.smoothing.smoothing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Disk overflow of one gate class: append-only, memory-mapped segment files of 16-byte entries
+ * [enqueuedAtMs][createdTime]. createdTime is written last and is never 0, so the first zero marks the end
+ * of the log, also after a torn write. Entries are taken in order ({@link #take}) and completed in any order
+ * ({@link #complete}); an 8-byte cursor file holds (segment << 32 | entry) after the longest completed prefix,
+ * so after a crash replay resumes at the oldest entry not completed yet: at-least-once, entries that were
+ * running at the crash run again. Segments behind the cursor are deleted.
+ * Durability: mapped pages are written back by the OS, {@link #close()} and segment rollover force them
+ * explicitly. The log survives a process crash (the pages live in the page cache), not a host crash or power
+ * loss, which can drop the unforced tail of the log and the latest cursor moves.
+ * The mappings themselves are released by GC (no unmap API on JDK 17).
+ * Not thread-safe: the gate guards each log with its monitor.
+ */
+final class SpillLog implements Closeable {
+    static final int ENTRY_BYTES = 16;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final MappedByteBuffer cursor;
+
+    private long headSeq;
+    private MappedByteBuffer head;
+    private int readPos;
+    private long tailSeq;
+    private MappedByteBuffer tail;
+    private int writePos;
+    private long oldestSeq; // oldest segment file still on disk
+    // taken, not yet completed entries by take number (ring): cursor value after the entry, completion flag
+    private long[] pendingAfter = new long[1024];
+    private boolean[] pendingDone = new boolean[1024];
+    private long taken;
+    private long committed;
+    // written under the gate's lock, read lock-free for depth checks and gauges
+    private volatile long size;
+
+    SpillLog(Path dir, int segmentBytes, int maxSegments) throws IOException {
+        if (segmentBytes < ENTRY_BYTES) throw new IllegalArgumentException("segment must hold at least one entry");
+        if (maxSegments < 1) throw new IllegalArgumentException("max-segments must be >= 1");
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes - segmentBytes % ENTRY_BYTES;
+        this.maxSegments = maxSegments;
+        this.cursor = map(dir.resolve("cursor"), Long.BYTES);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        long c = cursor.getLong(0);
+        long cursorSeq = c >>> 32;
+        int cursorPos = (int) (c & 0xFFFF_FFFFL) * ENTRY_BYTES;
+        List<Long> seqs;
+        try (Stream<Path> files = Files.list(dir)) {
+            seqs = files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(".seg"))
+                    .map(n -> Long.parseLong(n.substring(0, n.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+        for (long seq : seqs) {
+            if (seq < cursorSeq) Files.deleteIfExists(segment(seq)); // read before the crash
+        }
+        List<Long> live = seqs.stream().filter(s -> s >= cursorSeq).toList();
+        if (live.isEmpty()) {
+            headSeq = tailSeq = oldestSeq = cursorSeq;
+            head = tail = map(segment(headSeq), segmentBytes);
+            readPos = writePos = 0;
+            size = 0;
+            saveCursor();
+            return;
+        }
+        headSeq = oldestSeq = live.get(0);
+        readPos = headSeq == cursorSeq ? cursorPos : 0;
+        head = map(segment(headSeq), 0);
+        tailSeq = live.get(live.size() - 1);
+        tail = tailSeq == headSeq ? head : map(segment(tailSeq), 0);
+        writePos = tailSeq == headSeq ? readPos : 0;
+        while (writePos + ENTRY_BYTES <= tail.capacity() && tail.getLong(writePos + 8) != 0) writePos += ENTRY_BYTES;
+
+        long entries = tailSeq == headSeq ? writePos - readPos : (head.capacity() - readPos) + writePos;
+        for (long seq : live) {
+            if (seq != headSeq && seq != tailSeq) entries += Files.size(segment(seq)); // middle segments are full
+        }
+        size = entries / ENTRY_BYTES;
+        saveCursor();
+    }
+
+    /** Entries not taken yet. */
+    long size() {
+        return size;
+    }
+
+    /** Taken, not completed: replayed after a crash. */
+    long pending() {
+        return taken - committed;
+    }
+
+    /** @return false if the log already spans max-segments on disk and the tail is full. */
+    boolean append(long createdTime, long enqueuedAtMs) throws IOException {
+        if (writePos + ENTRY_BYTES > tail.capacity()) {
+            if (tailSeq - oldestSeq + 1 >= maxSegments) return false;
+            tail.force();
+            tailSeq++;
+            tail = map(segment(tailSeq), segmentBytes);
+            writePos = 0;
+        }
+        tail.putLong(writePos, enqueuedAtMs);
+        tail.putLong(writePos + 8, createdTime); // end marker goes last
+        writePos += ENTRY_BYTES;
+        size++;
+        return true;
+    }
+
+    /** size() > 0 only. Moves to the next segment when the head one is fully read. */
+    long peekCreatedTime() throws IOException {
+        rollHead();
+        return head.getLong(readPos + 8);
+    }
+
+    long peekEnqueuedAtMs() throws IOException {
+        rollHead();
+        return head.getLong(readPos);
+    }
+
+    /**
+     * Takes the head entry (peek it first). It stays on disk until {@link #complete} of the returned token
+     * and of every earlier token.
+     */
+    long take() {
+        if (taken - committed == pendingAfter.length) growPending();
+        int i = (int) (taken & (pendingAfter.length - 1));
+        readPos += ENTRY_BYTES;
+        size--;
+        pendingAfter[i] = headSeq << 32 | (readPos / ENTRY_BYTES);
+        pendingDone[i] = false;
+        return taken++;
+    }
+
+    /** The entry of this token has run: the durable cursor moves past the longest completed prefix. */
+    void complete(long token) throws IOException {
+        int mask = pendingAfter.length - 1;
+        pendingDone[(int) (token & mask)] = true;
+        long after = -1;
+        while (committed < taken && pendingDone[(int) (committed & mask)]) {
+            after = pendingAfter[(int) (committed & mask)];
+            committed++;
+        }
+        if (after < 0) return;
+        cursor.putLong(0, after);
+        long cursorSeq = after >>> 32;
+        while (oldestSeq < Math.min(cursorSeq, headSeq)) { // the head segment stays mapped until read past
+            Files.deleteIfExists(segment(oldestSeq++));
+        }
+    }
+
+    private void growPending() {
+        int oldMask = pendingAfter.length - 1;
+        long[] after = new long[pendingAfter.length * 2];
+        boolean[] done = new boolean[after.length];
+        int newMask = after.length - 1;
+        for (long t = committed; t < taken; t++) {
+            after[(int) (t & newMask)] = pendingAfter[(int) (t & oldMask)];
+            done[(int) (t & newMask)] = pendingDone[(int) (t & oldMask)];
+        }
+        pendingAfter = after;
+        pendingDone = done;
+    }
+
+    private void rollHead() throws IOException {
+        while (readPos + ENTRY_BYTES > head.capacity() && headSeq < tailSeq) {
+            headSeq++;
+            head = headSeq == tailSeq ? tail : map(segment(headSeq), 0);
+            readPos = 0;
+        }
+    }
+
+    private void saveCursor() {
+        cursor.putLong(0, headSeq << 32 | (readPos / ENTRY_BYTES));
+    }
+
+    private Path segment(long seq) {
+        return dir.resolve(String.format("%020d.seg", seq));
+    }
+
+    /** bytes 0 = map the existing file as is. */
+    private static MappedByteBuffer map(Path file, long bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes > 0 ? Math.max(bytes, ch.size()) : ch.size());
+        }
+    }
+
+    @Override
+    public void close() {
+        tail.force();
+        if (head != tail) head.force();
+        cursor.force();
+    }
+}
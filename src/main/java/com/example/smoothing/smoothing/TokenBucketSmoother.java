@@ -0,0 +1,24 @@
+package com.example.smoothing.smoothing;
+
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/** Fixed rate with bursts of up to {@code burst} tasks released back-to-back after idle periods. */
+@Slf4j
+public final class TokenBucketSmoother extends PacedSmoother {
+    private final double ratePerSecond;
+
+    public TokenBucketSmoother(double ratePerSecond, double burst, int classes, int queueCapacity,
+                               StageLatencyMetrics stageLatencyMetrics) {
+        super("token-bucket-pacer", burst, classes, queueCapacity, stageLatencyMetrics);
+        if (!(ratePerSecond > 0.0)) throw new IllegalArgumentException("rate must be > 0");
+        this.ratePerSecond = ratePerSecond;
+        log.info("TokenBucketSmoother: rate={}/s, burst={}", ratePerSecond, burst);
+        start();
+    }
+
+    @Override
+    protected double currentRatePerSecond() {
+        return ratePerSecond;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.smoothing.smoothing.limit;
+
+import com.example.smoothing.metrics.LatencyMetrics;
+import com.example.smoothing.metrics.ThroughputMetrics;
+import com.example.smoothing.smoothing.BackpressureGate;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically resizes the {@link BackpressureGate} credit budget from the dispatch → completion latency
+ * ({@link LatencyMetrics#getDownstreamLastInterval()}) and handled rate ({@link ThroughputMetrics}).
+ * Not e2e latency: that includes waiting in the gate, which grows when credits are cut, and would
+ * drive the limit down to min-credits under any HIGH phase.
+ * Replaces manual sweeps over backpressure.credits.
+ */
+@Slf4j
+@Component
+public class AdaptiveCreditController {
+    private final BackpressureGate gate;
+    private final LatencyMetrics latencyMetrics;
+    private final ThroughputMetrics throughputMetrics;
+    private final boolean enabled;
+    private final CreditLimitStrategy strategy;
+    private final long minCredits;
+    private final long maxCredits;
+
+    private double minLatencyMs = Double.MAX_VALUE;
+    @Getter
+    private volatile double lastP99Ms;
+
+    public AdaptiveCreditController(
+            BackpressureGate gate,
+            LatencyMetrics latencyMetrics,
+            ThroughputMetrics throughputMetrics,
+            @Value("${backpressure.enabled}") boolean backpressureEnabled,
+            @Value("${backpressure.adaptive.enabled}") boolean adaptiveEnabled,
+            @Value("${backpressure.adaptive.strategy}") String strategy,
+            @Value("${backpressure.adaptive.target-p99-ms}") double targetP99Ms,
+            @Value("${backpressure.adaptive.min-credits}") long minCredits,
+            @Value("${backpressure.adaptive.max-credits}") long maxCredits
+    ) {
+        if (minCredits <= 0 || maxCredits < minCredits)
+            throw new IllegalArgumentException("require 0 < min-credits <= max-credits");
+        this.gate = gate;
+        this.latencyMetrics = latencyMetrics;
+        this.throughputMetrics = throughputMetrics;
+        this.enabled = backpressureEnabled && adaptiveEnabled;
+        this.strategy = CreditLimitStrategy.of(strategy, targetP99Ms);
+        this.minCredits = minCredits;
+        this.maxCredits = maxCredits;
+        if (enabled) {
+            log.info("AdaptiveCreditController enabled: strategy={}, targetP99={}ms, credits in [{}, {}]",
+                    strategy, targetP99Ms, minCredits, maxCredits);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${backpressure.adaptive.interval-ms}")
+    public void adjust() {
+        if (!enabled) return;
+        LatencyMetrics.Snapshot interval = latencyMetrics.getDownstreamLastInterval();
+        long samples = interval.count();
+        if (samples > 0) {
+            minLatencyMs = Math.min(minLatencyMs, interval.min());
+            lastP99Ms = interval.p99();
+        }
+        var sample = new LimitSample(
+                lastP99Ms,
+                samples > 0 ? interval.mean() : 0.0,
+                minLatencyMs == Double.MAX_VALUE ? 0.0 : minLatencyMs,
+                throughputMetrics.getCurrentThroughput(),
+                gate.getInFlight(),
+                gate.getQueueDepth(),
+                samples);
+
+        long oldLimit = gate.getCreditLimit();
+        long newLimit = Math.max(minCredits, Math.min(maxCredits, strategy.update(oldLimit, sample)));
+        if (newLimit != oldLimit) {
+            gate.resize(newLimit);
+            log.info("Credit limit {} -> {} ({})", oldLimit, newLimit, sample);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.smoothing.smoothing.limit;
+
+/**
+ * Additive increase / multiplicative decrease.
+ * p99 above target → limit * backoff; otherwise grow by a fixed step, but only while
+ * the gate actually has work waiting (no point inflating an unused budget).
+ */
+public final class AimdCreditLimit implements CreditLimitStrategy {
+    private final double targetP99Ms;
+    private final double backoff;   // 0..1
+    private final long increase;
+
+    public AimdCreditLimit(double targetP99Ms, double backoff, long increase) {
+        if (!(targetP99Ms > 0.0)) throw new IllegalArgumentException("targetP99Ms must be > 0");
+        if (!(backoff > 0.0) || backoff >= 1.0) throw new IllegalArgumentException("backoff must be in (0,1)");
+        if (increase <= 0) throw new IllegalArgumentException("increase must be > 0");
+        this.targetP99Ms = targetP99Ms;
+        this.backoff = backoff;
+        this.increase = increase;
+    }
+
+    @Override
+    public long update(long currentLimit, LimitSample s) {
+        if (s.samples() == 0) return currentLimit;
+        if (s.p99Ms() > targetP99Ms) {
+            return (long) Math.floor(currentLimit * backoff);
+        }
+        if (s.queueDepth() > 0) {
+            return currentLimit + increase;
+        }
+        return currentLimit;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.smoothing.smoothing.limit;
+
+import com.example.smoothing.smoothing.BackpressureGate;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the real Kafka backlog of the consumer group: per partition end offset minus committed offset
+ * (no commit yet → the whole partition). Works for consumers in other processes, unlike in-process completions.
+ * With max-lag > 0 the {@link BackpressureGate} is held above max-lag and released at max-lag * resume-ratio;
+ * if the lag cannot be read the gate is released (fail open), the last lag is kept as -1.
+ * Polls on its own thread: the AdminClient calls block for up to interval-ms each, which must not stall the
+ * shared Boot task scheduler (it also drives the load generator).
+ */
+@Slf4j
+@Component
+public class ConsumerLagMonitor {
+    private final BackpressureGate gate;
+    private final KafkaAdmin kafkaAdmin;
+    private final boolean enabled;
+    private final String topic;
+    private final String groupId;
+    private final long maxLag;
+    private final long resumeLag;
+    private final long timeoutMs;
+    private final ScheduledExecutorService poller;
+
+    private AdminClient admin;
+    @Getter
+    private volatile long lag;
+    @Getter
+    private volatile long maxPartitionLag;
+
+    public ConsumerLagMonitor(
+            BackpressureGate gate,
+            KafkaAdmin kafkaAdmin,
+            @Value("${backpressure.lag.enabled}") boolean enabled,
+            @Value("${spring.kafka.topic}") String topic,
+            @Value("${consumer.group-id}") String groupId,
+            @Value("${backpressure.lag.max-lag}") long maxLag,
+            @Value("${backpressure.lag.resume-ratio}") double resumeRatio,
+            @Value("${backpressure.lag.interval-ms}") long intervalMs
+    ) {
+        if (maxLag < 0 || resumeRatio < 0 || resumeRatio > 1)
+            throw new IllegalArgumentException("require max-lag >= 0 and 0 <= resume-ratio <= 1");
+        this.gate = gate;
+        this.kafkaAdmin = kafkaAdmin;
+        this.enabled = enabled;
+        this.topic = topic;
+        this.groupId = groupId;
+        this.maxLag = maxLag;
+        this.resumeLag = (long) (maxLag * resumeRatio);
+        this.timeoutMs = intervalMs;
+        this.poller = enabled ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "consumer-lag-monitor");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        if (enabled) {
+            poller.scheduleAtFixedRate(this::poll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+            log.info("ConsumerLagMonitor enabled: group={}, topic={}, {}", groupId, topic,
+                    maxLag > 0 ? "hold above " + maxLag + ", release at " + resumeLag : "metric only");
+        }
+    }
+
+    void poll() {
+        try {
+            if (admin == null) admin = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+            update(readLag());
+        } catch (Exception e) {
+            if (lag >= 0) log.warn("Consumer lag unavailable, releasing the gate: {}", e.toString());
+            lag = -1;
+            maxPartitionLag = -1;
+            gate.withhold(false);
+        }
+    }
+
+    private Map<TopicPartition, Long> readLag() throws Exception {
+        TopicDescription description = admin.describeTopics(List.of(topic)).allTopicNames()
+                .get(timeoutMs, TimeUnit.MILLISECONDS).get(topic);
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        description.partitions().forEach(p -> latest.put(new TopicPartition(topic, p.partition()), OffsetSpec.latest()));
+
+        var ends = admin.listOffsets(latest).all().get(timeoutMs, TimeUnit.MILLISECONDS);
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata().get(timeoutMs, TimeUnit.MILLISECONDS);
+
+        Map<TopicPartition, Long> lags = new HashMap<>();
+        ends.forEach((tp, end) -> {
+            OffsetAndMetadata c = committed.get(tp);
+            lags.put(tp, Math.max(0, end.offset() - (c == null ? 0 : c.offset())));
+        });
+        return lags;
+    }
+
+    private void update(Map<TopicPartition, Long> lags) {
+        long total = 0, max = 0;
+        for (long l : lags.values()) {
+            total += l;
+            max = Math.max(max, l);
+        }
+        lag = total;
+        maxPartitionLag = max;
+        if (maxLag == 0) return;
+        if (!gate.isWithheld() && total > maxLag) {
+            log.info("Consumer lag {} > {}: withholding credits", total, maxLag);
+            gate.withhold(true);
+        } else if (gate.isWithheld() && total <= resumeLag) {
+            log.info("Consumer lag {} <= {}: releasing credits", total, resumeLag);
+            gate.withhold(false);
+        }
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        if (poller == null) return;
+        poller.shutdownNow();
+        poller.awaitTermination(timeoutMs * 3, TimeUnit.MILLISECONDS);
+        if (admin != null) admin.close();
+    }
+}
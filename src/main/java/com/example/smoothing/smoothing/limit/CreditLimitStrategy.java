@@ -0,0 +1,19 @@
+package com.example.smoothing.smoothing.limit;
+
+/**
+ * Strategy that resizes the credit budget of {@link com.example.smoothing.smoothing.BackpressureGate}
+ * from the latency / throughput observed in the last control interval.
+ */
+public interface CreditLimitStrategy {
+    /** Returns the new credit limit. Bounds (min/max) are applied by the caller. */
+    long update(long currentLimit, LimitSample sample);
+
+    static CreditLimitStrategy of(String name, double targetP99Ms) {
+        return switch (name.toLowerCase()) {
+            case "aimd" -> new AimdCreditLimit(targetP99Ms, 0.9, 10);
+            case "vegas" -> new VegasCreditLimit(targetP99Ms, 3, 6);
+            case "gradient" -> new GradientCreditLimit(targetP99Ms, 0.2);
+            default -> throw new IllegalArgumentException("Unknown credit limit strategy: " + name);
+        };
+    }
+}
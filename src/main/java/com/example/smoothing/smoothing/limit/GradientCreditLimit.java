@@ -0,0 +1,27 @@
+package com.example.smoothing.smoothing.limit;
+
+/**
+ * Gradient limit: newLimit = limit * (target / p99) + headroom, smoothed.
+ * The gradient is clamped to [0.5, 1.0] so one bad interval halves the budget at most,
+ * and growth comes only from the sqrt(limit) headroom while there is work waiting.
+ */
+public final class GradientCreditLimit implements CreditLimitStrategy {
+    private final double targetP99Ms;
+    private final double smoothing; // 0..1, weight of the new estimate
+
+    public GradientCreditLimit(double targetP99Ms, double smoothing) {
+        if (!(targetP99Ms > 0.0)) throw new IllegalArgumentException("targetP99Ms must be > 0");
+        if (!(smoothing > 0.0) || smoothing > 1.0) throw new IllegalArgumentException("smoothing must be in (0,1]");
+        this.targetP99Ms = targetP99Ms;
+        this.smoothing = smoothing;
+    }
+
+    @Override
+    public long update(long currentLimit, LimitSample s) {
+        if (s.samples() == 0 || !(s.p99Ms() > 0.0)) return currentLimit;
+        double gradient = Math.max(0.5, Math.min(1.0, targetP99Ms / s.p99Ms()));
+        double headroom = s.queueDepth() > 0 ? Math.sqrt(currentLimit) : 0.0;
+        double estimate = currentLimit * gradient + headroom;
+        return Math.round(currentLimit * (1.0 - smoothing) + estimate * smoothing);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.smoothing.smoothing.limit;
+
+/**
+ * One control-interval observation. Latencies are gate dispatch → consumer done (time a credit is held).
+ *
+ * @param p99Ms        p99 latency over the interval, ms
+ * @param avgMs        mean latency over the interval, ms
+ * @param minMs        lowest latency seen so far (no-load estimate), ms
+ * @param throughput   handled messages/sec over the interval
+ * @param inFlight     credits currently taken (limit - available credits)
+ * @param queueDepth   tasks waiting in the gate for a credit
+ * @param samples      number of latency samples in the interval
+ */
+public record LimitSample(double p99Ms, double avgMs, double minMs, double throughput,
+                          long inFlight, long queueDepth, long samples) {
+}
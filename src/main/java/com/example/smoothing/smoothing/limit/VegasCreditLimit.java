@@ -0,0 +1,37 @@
+package com.example.smoothing.smoothing.limit;
+
+/**
+ * TCP Vegas style limit.
+ * Little's law gives the concurrency the sink sustains without queueing: throughput * minLatency.
+ * Everything in flight above that is queueing inside the pipeline. Keep it between alpha and beta;
+ * a p99 above target always forces a decrease.
+ */
+public final class VegasCreditLimit implements CreditLimitStrategy {
+    private final double targetP99Ms;
+    private final long alpha;
+    private final long beta;
+
+    public VegasCreditLimit(double targetP99Ms, long alpha, long beta) {
+        if (!(targetP99Ms > 0.0)) throw new IllegalArgumentException("targetP99Ms must be > 0");
+        if (alpha < 0 || beta <= alpha) throw new IllegalArgumentException("require 0 <= alpha < beta");
+        this.targetP99Ms = targetP99Ms;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    @Override
+    public long update(long currentLimit, LimitSample s) {
+        if (s.samples() == 0 || !(s.minMs() > 0.0)) return currentLimit;
+        double noQueueConcurrency = s.throughput() * s.minMs() / 1000.0;
+        double queued = s.inFlight() - noQueueConcurrency;
+        // step ~ log10(limit), as in the Netflix concurrency-limits Vegas
+        long step = Math.max(1, (long) Math.log10(Math.max(1, currentLimit)));
+        if (s.p99Ms() > targetP99Ms || queued > beta) {
+            return currentLimit - step;
+        }
+        if (queued < alpha && s.queueDepth() > 0) {
+            return currentLimit + step;
+        }
+        return currentLimit;
+    }
+}
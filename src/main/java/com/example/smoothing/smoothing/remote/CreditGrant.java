@@ -0,0 +1,5 @@
+package com.example.smoothing.smoothing.remote;
+
+/** Consumer side → one producer instance: n more credits. */
+public record CreditGrant(String producerId, long credits, long issuedAtMs) {
+}
@@ -0,0 +1,10 @@
+package com.example.smoothing.smoothing.remote;
+
+/**
+ * Producer instance → consumer side, every interval. Renews the producer's lease and reports
+ * its unused credits (reclaimed if the lease expires), its backlog (used to split grants) and the
+ * credits it has received in total, which acknowledges the grants that reached it.
+ */
+public record ProducerHeartbeat(String producerId, long availableCredits, int queueDepth, long receivedCredits,
+                                long sentAtMs) {
+}
@@ -0,0 +1,69 @@
+package com.example.smoothing.smoothing.remote;
+
+import com.example.smoothing.smoothing.BackpressureGate;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Producer side of distributed credit feedback: heartbeats its lease to the issuers and feeds the
+ * grants addressed to it into the local {@link BackpressureGate}.
+ * The producer id carries the start time, so grants addressed to a previous incarnation of the
+ * same pod are ignored (the issuer reclaims them when that incarnation's lease expires).
+ * The local backpressure.credits budget is not used: the gate starts empty and every credit comes from
+ * the issuer, so N producers (or a restarted one) share one global budget.
+ */
+@Slf4j
+@Component
+public class RemoteCreditClient {
+    private final BackpressureGate gate;
+    private final KafkaTemplate<String, Object> controlTemplate;
+    private final boolean enabled;
+    private final String heartbeatsTopic;
+    @Getter
+    private final String producerId;
+    @Getter
+    private final AtomicLong received = new AtomicLong();
+
+    public RemoteCreditClient(
+            BackpressureGate gate,
+            @Qualifier("controlKafkaTemplate") KafkaTemplate<String, Object> controlTemplate,
+            @Value("${credits.remote.enabled}") boolean enabled,
+            @Value("${credits.remote.instance-id}") String instanceId,
+            @Value("${credits.remote.heartbeats-topic}") String heartbeatsTopic
+    ) {
+        this.gate = gate;
+        this.controlTemplate = controlTemplate;
+        this.enabled = enabled;
+        this.heartbeatsTopic = heartbeatsTopic;
+        this.producerId = instanceId + "-" + System.currentTimeMillis();
+        if (enabled) {
+            gate.resize(0);
+            log.info("Remote credits enabled, producerId={}, waiting for the issuer's budget", producerId);
+        }
+    }
+
+    @KafkaListener(topics = "${credits.remote.grants-topic}",
+            groupId = "credit-client-${credits.remote.instance-id}",
+            containerFactory = "controlKafkaListenerContainerFactory",
+            autoStartup = "${credits.remote.enabled}")
+    public void onGrant(CreditGrant grant) {
+        if (!producerId.equals(grant.producerId())) return;
+        received.addAndGet(grant.credits());
+        gate.grant(grant.credits());
+    }
+
+    @Scheduled(fixedRateString = "${credits.remote.interval-ms}")
+    public void heartbeat() {
+        if (!enabled) return;
+        controlTemplate.send(heartbeatsTopic, producerId, new ProducerHeartbeat(
+                producerId, gate.getCredits().get(), gate.getQueueDepth(), received.get(), System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.smoothing.smoothing.remote;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Consumer side of distributed credit feedback.
+ * The global budget (credits.remote.budget) is issued from here as producers join; producers start with
+ * no local credits. After that, completions are aggregated and, every interval, split across live
+ * producer instances (weighted by their backlog) as {@link CreditGrant}s on the grants topic.
+ * Grants stay outstanding until the producer's heartbeat acknowledges them (cumulative received credits),
+ * so a heartbeat overtaking a grant in transit does not lose it.
+ * A producer is live while its heartbeats keep arriving within lease-ms. With reclaim on, an expired
+ * producer's credits — unused ones from its last heartbeat plus its unacknowledged grants — go back into
+ * the pool. Credits it spent after that last heartbeat also come back as completions, so reclaim can
+ * over-count by up to one heartbeat interval of that producer's sends; it is off by default.
+ * With several consumer instances issue the budget and reclaim on one of them only.
+ */
+@Slf4j
+@Component
+public class RemoteCreditIssuer {
+    private final KafkaTemplate<String, Object> controlTemplate;
+    private final boolean enabled;
+    private final boolean reclaim;
+    private final String grantsTopic;
+    private final long leaseMs;
+
+    private final LongAdder completed = new LongAdder();
+    // budget not handed out yet: goes to the first producers that join
+    private final AtomicLong unissued;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    @Getter
+    private final AtomicLong granted = new AtomicLong();
+    @Getter
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    private static final class Lease {
+        volatile ProducerHeartbeat last;
+        volatile long receivedAtMs;
+        final AtomicLong granted = new AtomicLong();
+
+        /** Granted but not yet acknowledged by a heartbeat: in transit on the grants topic. */
+        long outstanding() {
+            return Math.max(0, granted.get() - last.receivedCredits());
+        }
+    }
+
+    public RemoteCreditIssuer(
+            @Qualifier("controlKafkaTemplate") KafkaTemplate<String, Object> controlTemplate,
+            @Value("${credits.remote.enabled}") boolean enabled,
+            @Value("${credits.remote.reclaim}") boolean reclaim,
+            @Value("${credits.remote.budget}") long budget,
+            @Value("${credits.remote.grants-topic}") String grantsTopic,
+            @Value("${credits.remote.lease-ms}") long leaseMs
+    ) {
+        this.controlTemplate = controlTemplate;
+        this.enabled = enabled;
+        this.reclaim = reclaim;
+        this.grantsTopic = grantsTopic;
+        this.leaseMs = leaseMs;
+        this.unissued = new AtomicLong(enabled ? budget : 0);
+        if (enabled) log.info("Remote credit issuer: budget={}, reclaim={}", budget, reclaim);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Called by the consumer per finished message instead of an in-process grant. */
+    public void onCompleted(long n) {
+        completed.add(n);
+    }
+
+    @KafkaListener(topics = "${credits.remote.heartbeats-topic}",
+            groupId = "credit-issuer-${credits.remote.instance-id}",
+            containerFactory = "controlKafkaListenerContainerFactory",
+            autoStartup = "${credits.remote.enabled}")
+    public void onHeartbeat(ProducerHeartbeat hb) {
+        Lease lease = leases.computeIfAbsent(hb.producerId(), id -> {
+            log.info("Producer {} joined", id);
+            return new Lease();
+        });
+        lease.last = hb;
+        lease.receivedAtMs = System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedRateString = "${credits.remote.interval-ms}")
+    public void publishGrants() {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+        long pool = completed.sumThenReset() + unissued.getAndSet(0);
+
+        List<Map.Entry<String, Lease>> live = new ArrayList<>(leases.size());
+        for (var e : leases.entrySet()) {
+            Lease lease = e.getValue();
+            if (lease.last == null) continue; // just joined, first heartbeat not stored yet
+            if (now - lease.receivedAtMs > leaseMs) {
+                leases.remove(e.getKey());
+                if (reclaim) {
+                    long lost = Math.max(0, lease.last.availableCredits()) + lease.outstanding();
+                    pool += lost;
+                    reclaimed.addAndGet(lost);
+                    log.warn("Producer {} lease expired, reclaimed {} credits", e.getKey(), lost);
+                } else {
+                    log.warn("Producer {} lease expired", e.getKey());
+                }
+            } else {
+                live.add(e);
+            }
+        }
+        if (pool <= 0) return;
+        if (live.isEmpty()) {
+            completed.add(pool); // nobody to give it to yet — keep for the next round
+            return;
+        }
+
+        // split proportionally to backlog (+1 so idle producers still get a share), remainder to the largest
+        long totalWeight = 0;
+        for (var e : live) totalWeight += e.getValue().last.queueDepth() + 1L;
+        long left = pool;
+        Map.Entry<String, Lease> largest = live.get(0);
+        long[] shares = new long[live.size()];
+        for (int i = 0; i < live.size(); i++) {
+            long weight = live.get(i).getValue().last.queueDepth() + 1L;
+            shares[i] = pool * weight / totalWeight;
+            left -= shares[i];
+            if (weight > largest.getValue().last.queueDepth() + 1L) largest = live.get(i);
+        }
+        for (int i = 0; i < live.size(); i++) {
+            var e = live.get(i);
+            long share = shares[i] + (e == largest ? left : 0);
+            if (share <= 0) continue;
+            e.getValue().granted.addAndGet(share);
+            granted.addAndGet(share);
+            controlTemplate.send(grantsTopic, e.getKey(), new CreditGrant(e.getKey(), share, now));
+        }
+    }
+
+    public int getLiveProducers() {
+        return leases.size();
+    }
+
+    /** Grants not yet acknowledged by the producers' heartbeats. */
+    public long getOutstanding() {
+        long sum = 0;
+        for (Lease lease : leases.values()) {
+            if (lease.last != null) sum += lease.outstanding();
+        }
+        return sum;
+    }
+}
@@ -1,3 +1,12 @@
+-- switching back from the partitioned profile: drop its partitioned table (synthetic load data only)
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('public.events') AND relkind = 'p') THEN
+        DROP TABLE events CASCADE;
+    END IF;
+END $$
+^;
+
 CREATE TABLE IF NOT EXISTS events (
     id bigserial PRIMARY KEY,
     generated_at_ms bigint NOT NULL,
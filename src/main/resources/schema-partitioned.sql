@@ -0,0 +1,95 @@
+-- Append-optimized profile (db.schema-profile=partitioned):
+-- range partitions on generated_at_ms, BRIN on the time columns, no payload index, no primary key,
+-- audit rows written once per statement from the transition table instead of once per row.
+
+-- switching from the classic profile: drop its plain table (synthetic load data only)
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('public.events') AND relkind = 'r') THEN
+        DROP TABLE events CASCADE;
+    END IF;
+END $$
+^;
+
+CREATE TABLE IF NOT EXISTS events (
+    id bigserial,
+    generated_at_ms bigint NOT NULL,
+    payload_text text,
+    saved_at timestamptz DEFAULT now()
+) PARTITION BY RANGE (generated_at_ms)
+^;
+
+-- rows outside the prepared ranges (clock skew, replayed old messages)
+CREATE TABLE IF NOT EXISTS events_default PARTITION OF events DEFAULT
+^;
+
+-- BRIN: a few pages per partition instead of a B-tree entry per row; fine for append-ordered time columns
+CREATE INDEX IF NOT EXISTS ix_events_generated_at_brin ON events USING brin (generated_at_ms)
+^;
+CREATE INDEX IF NOT EXISTS ix_events_saved_at_brin ON events USING brin (saved_at)
+^;
+
+-- Creates partitions [now - width, now + ahead * width); called by EventPartitionMaintainer only, at startup and
+-- then every width, with db.partition.width-minutes: a width fixed here would overlap the configured one.
+-- A missing partition may already have rows in DEFAULT (clock skew, replays), and PARTITION OF then fails
+-- on every run: DEFAULT is detached, its rows in the new range are moved over, and it is attached again.
+-- All of it in one transaction; inserts into events wait on the lock meanwhile.
+CREATE OR REPLACE FUNCTION ensure_events_partitions(width_ms bigint, ahead int) RETURNS void
+LANGUAGE plpgsql AS $$
+DECLARE
+    now_ms bigint := (extract(epoch FROM clock_timestamp()) * 1000)::bigint;
+    start_ms bigint;
+    part text;
+    detached boolean := false;
+BEGIN
+    FOR i IN -1..ahead LOOP
+        start_ms := (now_ms / width_ms + i) * width_ms;
+        part := 'events_p' || start_ms;
+        -- existing or overlapping (partitions of another width, kept from an earlier run): rows of
+        -- the uncovered part of the range go to DEFAULT until the old partitions fall behind the clock
+        CONTINUE WHEN EXISTS (
+            SELECT 1
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid,
+                 LATERAL regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \(''(-?\d+)''\) TO \(''(-?\d+)''\)') b
+            WHERE i.inhparent = 'events'::regclass
+              AND b[1]::bigint < start_ms + width_ms AND b[2]::bigint > start_ms);
+        IF NOT detached THEN
+            ALTER TABLE events DETACH PARTITION events_default;
+            detached := true;
+        END IF;
+        EXECUTE format('CREATE TABLE %I PARTITION OF events FOR VALUES FROM (%s) TO (%s)',
+                       part, start_ms, start_ms + width_ms);
+        -- straight into the partition: the statement audit trigger on events does not fire again
+        EXECUTE format('WITH moved AS (DELETE FROM events_default WHERE generated_at_ms >= %s AND generated_at_ms < %s '
+                       'RETURNING *) INSERT INTO %I SELECT * FROM moved', start_ms, start_ms + width_ms, part);
+    END LOOP;
+    IF detached THEN
+        ALTER TABLE events ATTACH PARTITION events_default DEFAULT;
+    END IF;
+END $$
+^;
+
+CREATE TABLE IF NOT EXISTS events_audit (
+    id bigserial PRIMARY KEY,
+    event_id bigint NOT NULL,
+    created_at timestamptz DEFAULT now()
+)
+^;
+
+CREATE OR REPLACE FUNCTION trg_events_audit_stmt() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO events_audit(event_id) SELECT id FROM new_rows;
+    RETURN NULL;
+END $$
+^;
+
+DROP TRIGGER IF EXISTS events_audit_stmt_trg ON events
+^;
+
+CREATE TRIGGER events_audit_stmt_trg
+    AFTER INSERT ON events
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_events_audit_stmt()
+^;
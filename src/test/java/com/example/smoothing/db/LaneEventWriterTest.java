@@ -0,0 +1,146 @@
+package com.example.smoothing.db;
+
+import com.example.smoothing.metrics.InsertCostMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against the compose Postgres ({@code docker compose up -d pg}, localhost:5433) or any server in TEST_PG_URL;
+ * skipped when none is reachable. Creates the classic schema if events is missing, touches only its own rows.
+ */
+class LaneEventWriterTest {
+    private static final String URL = System.getenv().getOrDefault("TEST_PG_URL", "jdbc:postgresql://localhost:5433/postgres");
+    private static final String USER = "postgres";
+    private static final String PASSWORD = "postgres";
+
+    private final String marker = "lane-test-" + UUID.randomUUID();
+    private LaneEventWriter writer;
+
+    @BeforeAll
+    static void database() {
+        try (Connection c = DriverManager.getConnection(URL, USER, PASSWORD);
+             ResultSet rs = c.createStatement().executeQuery("SELECT to_regclass('public.events') IS NOT NULL")) {
+            rs.next();
+            if (!rs.getBoolean(1)) {
+                ScriptUtils.executeSqlScript(c, new EncodedResource(new ClassPathResource("schema-classic.sql")),
+                        false, false, ScriptUtils.DEFAULT_COMMENT_PREFIX, "^;",
+                        ScriptUtils.DEFAULT_BLOCK_COMMENT_START_DELIMITER, ScriptUtils.DEFAULT_BLOCK_COMMENT_END_DELIMITER);
+            }
+        } catch (SQLException e) {
+            Assumptions.abort("Postgres not reachable at " + URL + ": " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void cleanUp() throws SQLException {
+        if (writer != null) writer.shutdown();
+        try (Connection c = DriverManager.getConnection(URL, USER, PASSWORD);
+             PreparedStatement ps = c.prepareStatement("DELETE FROM events WHERE payload_text = ?")) {
+            ps.setString(1, marker);
+            ps.executeUpdate();
+        }
+    }
+
+    @Test
+    void routesByKeyOrRoundRobinAndCommits() throws SQLException {
+        writer = writer(4, 1, 4, false, 200);
+
+        List<CompletableFuture<Double>> done = new ArrayList<>();
+        for (int i = 0; i < 50; i++) done.add(writer.insert(7L, i, marker));
+        join(done);
+        int keyed = -1;
+        for (int lane = 0; lane < 4; lane++) {
+            if (writer.getRows(lane) == 0) continue;
+            assertEquals(-1, keyed, "one key, one lane");
+            keyed = lane;
+        }
+        assertEquals(50, writer.getRows(keyed));
+
+        for (int i = 0; i < 40; i++) done.add(writer.insert(i, marker));
+        join(done);
+        for (int lane = 0; lane < 4; lane++) {
+            assertEquals(lane == keyed ? 60 : 10, writer.getRows(lane), "round-robin, lane " + lane);
+        }
+        assertEquals(90, countRows(), "committed, visible to another connection");
+    }
+
+    @Test
+    void growsUnderLoadAndShrinksWhenIdle() throws Exception {
+        writer = writer(1, 1, 4, true, 1); // one row per transaction keeps the single lane busy
+        writer.resize();
+
+        List<CompletableFuture<Double>> done = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) done.add(writer.insert(i, marker));
+        Thread.sleep(200);
+        writer.resize();
+        assertTrue(writer.getActiveLanes() > 1, "busy lane => more lanes, got " + writer.getActiveLanes());
+
+        join(done);
+        for (int i = 0; i < 10 && writer.getActiveLanes() > 1; i++) {
+            Thread.sleep(50);
+            writer.resize();
+        }
+        assertEquals(1, writer.getActiveLanes(), "idle => back to min");
+        assertEquals(2000, countRows());
+    }
+
+    @Test
+    void rampToBigTransactionsIsNotSaturation() throws Exception {
+        writer = writer(1, 1, 4, true, 200);
+        for (int interval = 0; interval < 5; interval++) { // LOW: single-row transactions
+            for (int i = 0; i < 5; i++) {
+                writer.insert(i, marker).join();
+                Thread.sleep(20);
+            }
+            writer.resize();
+        }
+        int low = writer.getActiveLanes();
+
+        List<CompletableFuture<Double>> done = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) done.add(writer.insert(i, marker)); // HIGH: batches of up to 200 rows
+        Thread.sleep(100);
+        writer.resize();
+        assertTrue(writer.getLastTxTimeRatio() <= 2.0, "ratio " + writer.getLastTxTimeRatio());
+        assertTrue(writer.getActiveLanes() >= low, "no lane removed on the ramp");
+        join(done);
+        assertEquals(4025, countRows());
+    }
+
+    private LaneEventWriter writer(int initial, int min, int max, boolean autoSize, int maxRows) {
+        return new LaneEventWriter(new InsertCostMetrics(), URL, USER, PASSWORD, true,
+                initial, min, max, autoSize, 0.25, 2.0, 300, maxRows, 4096);
+    }
+
+    private static void join(List<CompletableFuture<Double>> done) {
+        CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private long countRows() throws SQLException {
+        try (Connection c = DriverManager.getConnection(URL, USER, PASSWORD);
+             PreparedStatement ps = c.prepareStatement("SELECT count(*) FROM events WHERE payload_text = ?")) {
+            ps.setString(1, marker);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.smoothing.generator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** 1 ms ticks, 8 slots: one revolution is 8 ms. */
+class TimingWheelTest {
+    private static final long MS = 1_000_000L;
+
+    private final TimingWheel wheel = new TimingWheel(MS, 8);
+    private final List<Long> fired = new ArrayList<>();
+
+    @Test
+    void firesOnlyDueDeadlines() {
+        wheel.add(3 * MS);
+        wheel.add(5 * MS + 500_000);
+        wheel.advance(2 * MS, fired::add);
+        assertTrue(fired.isEmpty());
+
+        wheel.advance(5 * MS, fired::add);
+        assertEquals(List.of(3 * MS), fired);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(5 * MS + 499_999, fired::add); // same tick, deadline later within it
+        assertEquals(1, fired.size());
+        wheel.advance(5 * MS + 500_000, fired::add);
+        assertEquals(List.of(3 * MS, 5 * MS + 500_000), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesBeyondOneRevolutionWaitForTheirRound() {
+        wheel.add(1 * MS);
+        wheel.add(9 * MS);  // same slot, next round
+        wheel.add(17 * MS); // two rounds later
+        wheel.advance(1 * MS, fired::add);
+        assertEquals(List.of(1 * MS), fired);
+        wheel.advance(8 * MS, fired::add);
+        assertEquals(1, fired.size());
+        wheel.advance(9 * MS, fired::add);
+        assertEquals(List.of(1 * MS, 9 * MS), fired);
+        wheel.advance(17 * MS, fired::add);
+        assertEquals(List.of(1 * MS, 9 * MS, 17 * MS), fired);
+    }
+
+    @Test
+    void pastDeadlinesAndLongJumpsFireOnTheNextAdvance() {
+        wheel.advance(10 * MS, fired::add);
+        wheel.add(2 * MS); // already passed
+        for (long d = 11; d <= 40; d++) wheel.add(d * MS); // more than a revolution, several per slot
+        wheel.advance(100 * MS, fired::add); // jump over many revolutions
+        assertEquals(31, fired.size());
+        assertTrue(fired.contains(2 * MS));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void slotGrowsPastItsInitialCapacity() {
+        for (int i = 0; i < 100; i++) wheel.add(4 * MS);
+        wheel.advance(4 * MS, fired::add);
+        assertEquals(100, fired.size());
+    }
+
+    @Test
+    void rejectsBadGeometry() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(MS, 6));
+    }
+}
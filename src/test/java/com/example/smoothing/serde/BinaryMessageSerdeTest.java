@@ -0,0 +1,63 @@
+package com.example.smoothing.serde;
+
+import com.example.smoothing.model.Message;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryMessageSerdeTest {
+    private static final String TOPIC = "events";
+
+    private final BinaryMessageSerializer serializer = new BinaryMessageSerializer();
+    private final BinaryMessageDeserializer deserializer =
+            new BinaryMessageDeserializer(new JsonDeserializer<>(Message.class, false));
+
+    @Test
+    void roundTripStartsWithTheVersionByte() {
+        Message msg = new Message(1_700_000_000_000L, "plain, кириллица, 🚀", 1, 1_700_000_000_123L);
+        byte[] data = serializer.serialize(TOPIC, msg);
+        assertEquals(BinaryMessageSerializer.VERSION, data[0]);
+        assertEquals(msg, deserializer.deserialize(TOPIC, data));
+
+        Message noPayload = new Message(5L, null, 0, 0L);
+        byte[] empty = serializer.serialize(TOPIC, noPayload);
+        assertEquals(BinaryMessageSerializer.HEADER_BYTES, empty.length);
+        assertEquals(noPayload, deserializer.deserialize(TOPIC, empty));
+        assertNull(deserializer.deserialize(TOPIC, null));
+    }
+
+    @Test
+    void jsonRecordsGoToTheFallback() {
+        Message msg = new Message(42L, "json", 0, 7L);
+        byte[] json;
+        try (JsonSerializer<Message> jsonSerializer = new JsonSerializer<>()) {
+            jsonSerializer.setAddTypeInfo(false);
+            json = jsonSerializer.serialize(TOPIC, msg);
+        }
+        assertEquals('{', json[0]);
+        assertEquals(msg, deserializer.deserialize(TOPIC, json));
+    }
+
+    @Test
+    void rejectsUnversionedTruncatedAndOutOfBoundsRecords() {
+        byte[] data = serializer.serialize(TOPIC, new Message(1_700_000_000_000L, "payload", 0, 0L));
+
+        byte[] unversioned = Arrays.copyOfRange(data, 1, data.length); // older builds: starts with the timestamp
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, unversioned));
+
+        byte[] truncated = Arrays.copyOf(data, BinaryMessageSerializer.HEADER_BYTES - 1);
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, truncated));
+
+        byte[] badLength = data.clone();
+        ByteBuffer.wrap(badLength).putInt(BinaryMessageSerializer.HEADER_BYTES - Integer.BYTES, 1_000);
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, badLength));
+    }
+}
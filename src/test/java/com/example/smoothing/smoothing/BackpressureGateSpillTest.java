@@ -0,0 +1,72 @@
+package com.example.smoothing.smoothing;
+
+import com.example.smoothing.generator.TimedTask;
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** overflow-policy=spill with a ring of 2 slots: everything beyond it goes through the log. */
+class BackpressureGateSpillTest {
+    @TempDir
+    Path dir;
+
+    private final List<Long> ran = new CopyOnWriteArrayList<>();
+
+    @Test
+    void spilledEntriesRunInArrivalOrder() throws InterruptedException {
+        BackpressureGate gate = gate(1);
+        TimedTask send = (createdTime, priority) -> {
+            ran.add(createdTime);
+            gate.onCompleted(1);
+        };
+        gate.setSpillTask(send);
+        for (long t = 1; t <= 200; t++) gate.enqueue(t, send);
+
+        await(() -> ran.size() == 200);
+        assertEquals(LongStream.rangeClosed(1, 200).boxed().toList(), ran);
+        assertTrue(gate.getSpilled().get() > 0, "the ring alone cannot hold 200");
+        assertEquals(0, gate.getSpillDepth(0));
+        gate.shutdown();
+    }
+
+    @Test
+    void restartReplaysWhatWasOnDisk() throws InterruptedException {
+        BackpressureGate before = gate(0); // no credits: nothing is dispatched
+        TimedTask lost = (createdTime, priority) -> ran.add(createdTime);
+        before.setSpillTask(lost);
+        for (long t = 1; t <= 10; t++) before.enqueue(t, lost);
+        assertEquals(8, before.getSpillDepth(0), "2 in the ring, the rest on disk");
+        before.shutdown();
+
+        BackpressureGate after = gate(1); // one at a time: order is observable
+        after.setSpillTask((createdTime, priority) -> {
+            ran.add(createdTime);
+            after.onCompleted(1);
+        });
+        await(() -> ran.size() == 8);
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), ran, "the ring is in memory only");
+        after.shutdown();
+    }
+
+    private BackpressureGate gate(long credits) {
+        return new BackpressureGate(new StageLatencyMetrics(), credits, "platform", 2, "spill", "strict",
+                new int[]{1}, false, 0, dir.toString(), 1, 4);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
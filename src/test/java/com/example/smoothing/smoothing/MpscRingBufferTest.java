@@ -0,0 +1,71 @@
+package com.example.smoothing.smoothing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+    @Test
+    void capacityRoundsUpAndFullRingRejects() {
+        MpscRingBuffer<String> ring = new MpscRingBuffer<>(3);
+        assertEquals(4, ring.capacity());
+        for (int i = 1; i <= 4; i++) assertTrue(ring.offer(i, "t" + i));
+        assertFalse(ring.offer(5, "t5"));
+        assertEquals(4, ring.size());
+        assertEquals(1, ring.peekCreatedTime());
+
+        List<String> polled = new ArrayList<>();
+        assertTrue(ring.poll((createdTime, enqueuedNanos, payload) -> polled.add(createdTime + ":" + payload)));
+        assertTrue(ring.offer(5, "t5"), "the freed slot is reused on the next lap");
+        while (ring.poll((createdTime, enqueuedNanos, payload) -> polled.add(createdTime + ":" + payload))) { }
+        assertEquals(List.of("1:t1", "2:t2", "3:t3", "4:t4", "5:t5"), polled);
+        assertEquals(0, ring.size());
+        assertEquals(Long.MAX_VALUE, ring.peekCreatedTime());
+    }
+
+    @Test
+    void concurrentProducersKeepPerProducerOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20_000;
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 1; i <= perProducer; i++) {
+                    while (!ring.offer(i, producer)) Thread.yield(); // full: let the consumer run
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+
+        long[] last = new long[producers];
+        long[] received = {0};
+        while (received[0] < (long) producers * perProducer) {
+            boolean polled = ring.poll((createdTime, enqueuedNanos, producer) -> {
+                assertEquals(last[producer] + 1, createdTime, "producer " + producer);
+                last[producer] = createdTime;
+                received[0]++;
+            });
+            if (!polled) Thread.yield();
+        }
+        for (Thread t : threads) t.join();
+        for (long l : last) assertEquals(perProducer, l);
+        assertEquals(0, ring.size());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.smoothing.smoothing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Segments of 4 entries, so a few appends already roll over. createdTime = entry number (never 0). */
+class SpillLogTest {
+    private static final int SEGMENT_BYTES = 4 * SpillLog.ENTRY_BYTES;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void outOfOrderCompletionKeepsTheCursorAtTheOldestRunningEntry() throws IOException {
+        SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 16);
+        for (long i = 1; i <= 3; i++) assertTrue(log.append(i, 100 + i));
+        long[] tokens = new long[3];
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, log.peekCreatedTime());
+            assertEquals(101 + i, log.peekEnqueuedAtMs());
+            tokens[i] = log.take();
+        }
+        assertEquals(0, log.size());
+        log.complete(tokens[2]);
+        log.complete(tokens[1]);
+        assertEquals(3, log.pending(), "entry 1 still running: nothing committed");
+        log.close();
+
+        SpillLog reopened = new SpillLog(dir, SEGMENT_BYTES, 16);
+        assertEquals(3, reopened.size(), "all three replayed");
+        assertEquals(List.of(1L, 2L, 3L), takeAll(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void reopenReplaysFromTheCommittedPrefixAndDropsReadSegments() throws IOException {
+        SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 16);
+        for (long i = 1; i <= 10; i++) assertTrue(log.append(i, 0));
+        long[] tokens = new long[6];
+        for (int i = 0; i < 6; i++) {
+            log.peekCreatedTime();
+            tokens[i] = log.take();
+        }
+        for (int i = 4; i >= 0; i--) log.complete(tokens[i]); // 1..5 done, 6 still running
+        assertEquals(1, log.pending());
+        assertEquals(List.of("00000000000000000001.seg", "00000000000000000002.seg", "cursor"), files(),
+                "segment 0 is behind the cursor");
+        log.close();
+
+        SpillLog reopened = new SpillLog(dir, SEGMENT_BYTES, 16);
+        assertEquals(5, reopened.size());
+        assertEquals(List.of(6L, 7L, 8L, 9L, 10L), takeAll(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void fifoAcrossSegmentsDeletesCompletedOnes() throws IOException {
+        SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 64);
+        long next = 1;
+        long expected = 1;
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 3; i++) assertTrue(log.append(next++, 0));
+            for (int i = 0; i < 2; i++) {
+                assertEquals(expected++, log.peekCreatedTime());
+                log.complete(log.take());
+            }
+        }
+        while (log.size() > 0) {
+            assertEquals(expected++, log.peekCreatedTime());
+            log.complete(log.take());
+        }
+        assertEquals(next, expected);
+        assertEquals(0, log.pending());
+        assertTrue(files().size() <= 3, "only the head/tail segments and the cursor are left: " + files());
+        log.close();
+
+        assertEquals(0, new SpillLog(dir, SEGMENT_BYTES, 64).size(), "nothing to replay");
+    }
+
+    @Test
+    void appendFailsAtMaxSegmentsUntilTheOldestIsCompleted() throws IOException {
+        SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 2);
+        for (long i = 1; i <= 8; i++) assertTrue(log.append(i, 0));
+        assertFalse(log.append(9, 0), "two full segments");
+
+        for (int i = 0; i < 4; i++) {
+            log.peekCreatedTime();
+            log.complete(log.take());
+        }
+        assertFalse(log.append(9, 0), "segment 0 is read, but the cursor has not moved past it yet");
+        log.peekCreatedTime();
+        log.complete(log.take()); // first entry of segment 1: segment 0 is deleted
+        assertTrue(log.append(9, 0));
+        assertEquals(List.of(6L, 7L, 8L, 9L), takeAll(log));
+        log.close();
+    }
+
+    private static List<Long> takeAll(SpillLog log) throws IOException {
+        List<Long> out = new ArrayList<>();
+        while (log.size() > 0) {
+            out.add(log.peekCreatedTime());
+            log.complete(log.take());
+        }
+        return out;
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.smoothing.smoothing.remote;
+
+import com.example.smoothing.config.CreditControlConfig;
+import com.example.smoothing.metrics.StageLatencyMetrics;
+import com.example.smoothing.smoothing.BackpressureGate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Grant / heartbeat / expiry cycle over an embedded broker. Scheduling is off: the test calls
+ * heartbeat() and publishGrants() itself, the Kafka listeners run as in the application.
+ */
+@SpringJUnitConfig
+@EmbeddedKafka(topics = {"credit-grants", "credit-heartbeats"}, partitions = 1, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+@TestPropertySource(properties = {
+        "credits.remote.enabled=true",
+        "credits.remote.instance-id=test",
+        "credits.remote.budget=100",
+        "credits.remote.reclaim=true",
+        "credits.remote.grants-topic=credit-grants",
+        "credits.remote.heartbeats-topic=credit-heartbeats",
+        "credits.remote.lease-ms=300"
+})
+class RemoteCreditsTest {
+    private static final long LOCAL_CREDITS = 500;
+
+    @Configuration
+    @EnableKafka
+    @Import({CreditControlConfig.class, RemoteCreditIssuer.class, RemoteCreditClient.class})
+    static class Config {
+        @Bean
+        BackpressureGate backpressureGate() {
+            return new BackpressureGate(new StageLatencyMetrics(), LOCAL_CREDITS, "platform", 1024, "block", "strict",
+                    new int[]{1}, false, 0, "", 0, 0);
+        }
+    }
+
+    @Autowired
+    BackpressureGate gate;
+    @Autowired
+    RemoteCreditIssuer issuer;
+    @Autowired
+    RemoteCreditClient client;
+    @Autowired
+    @Qualifier("controlKafkaTemplate")
+    KafkaTemplate<String, Object> controlTemplate;
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Test
+    void grantHeartbeatExpiryCycle() throws Exception {
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 1);
+        }
+        // local backpressure.credits is not a budget of its own
+        assertThat(gate.getCredits().get()).isZero();
+
+        // join: the whole budget is issued from the issuer, outstanding until a heartbeat acknowledges it
+        client.heartbeat();
+        await(() -> issuer.getLiveProducers() == 1);
+        issuer.publishGrants();
+        assertThat(issuer.getOutstanding()).isEqualTo(100);
+        await(() -> gate.getCredits().get() == 100);
+        client.heartbeat();
+        await(() -> issuer.getOutstanding() == 0);
+
+        // a second producer joins with a backlog, gets most of the next completions and never acknowledges them
+        controlTemplate.send("credit-heartbeats", "ghost",
+                new ProducerHeartbeat("ghost", 0, 99, 0, System.currentTimeMillis())).get();
+        await(() -> issuer.getLiveProducers() == 2);
+        issuer.onCompleted(100);
+        issuer.publishGrants();
+        long toGhost = issuer.getOutstanding();
+        assertThat(toGhost).isPositive();
+        await(() -> gate.getCredits().get() == 100 + (100 - toGhost));
+
+        // ghost's lease expires while the client keeps heartbeating: its unacknowledged grants are reclaimed
+        long until = System.currentTimeMillis() + 600;
+        while (System.currentTimeMillis() < until) {
+            client.heartbeat();
+            Thread.sleep(50);
+        }
+        issuer.publishGrants();
+        assertThat(issuer.getReclaimed().get()).isEqualTo(toGhost);
+        assertThat(issuer.getLiveProducers()).isEqualTo(1);
+        // budget + completions, nothing created or lost
+        await(() -> gate.getCredits().get() == 200);
+        assertThat(issuer.getGranted().get()).isEqualTo(200 + toGhost);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met within 10 s").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}